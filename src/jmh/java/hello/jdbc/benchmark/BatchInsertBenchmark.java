@@ -0,0 +1,77 @@
+package hello.jdbc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV5;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 단건 insert(save를 ROWS번) vs 배치 insert(saveAll 한 번) 처리량 비교 (MemberRepositoryV5)
+ *
+ * 결과는 row 하나당 시간 (OperationsPerInvocation = ROWS)
+ * 매 invocation 전에 이전에 넣은 row를 지워서 테이블 크기를 일정하게 유지
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BatchInsertBenchmark {
+
+    private static final int ROWS = 2000;
+
+    private HikariDataSource dataSource;
+    private MemberRepositoryV5 repository;
+    private JdbcTemplate cleaner;
+    private List<Member> members;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = BenchmarkDatabase.hikariDataSource(1);
+        BenchmarkDatabase.initSchema(dataSource);
+        repository = new MemberRepositoryV5(dataSource, 500);
+        cleaner = new JdbcTemplate(dataSource);
+
+        members = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            members.add(new Member("bt" + i, i));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void clear() {
+        cleaner.update("delete from member");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void singleInsert() {
+        for (Member member : members) {
+            repository.save(member);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void batchInsert() {
+        repository.saveAll(members);
+    }
+
+}
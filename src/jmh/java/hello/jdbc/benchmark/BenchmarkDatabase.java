@@ -0,0 +1,45 @@
+package hello.jdbc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+
+/**
+ * 벤치마크용 in-memory H2 DB
+ *
+ * H2 서버 없이(오프라인에서도) 실행할 수 있도록 embedded mode를 사용하고, 테이블은 src/jmh/resources/schema.sql로 생성함.
+ * DB_CLOSE_DELAY=-1: 마지막 커넥션이 닫혀도 DB를 유지 (DriverManager로 매번 커넥션을 새로 여는 V0, V1에 필요)
+ */
+public class BenchmarkDatabase {
+
+    public static final String URL = "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1";
+    public static final String USERNAME = "sa";
+    public static final String PASSWORD = "";
+
+    private BenchmarkDatabase() {
+    }
+
+    public static DriverManagerDataSource driverManagerDataSource() {
+        return new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+    }
+
+    public static HikariDataSource hikariDataSource(int maximumPoolSize) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        dataSource.setMaximumPoolSize(maximumPoolSize);
+        return dataSource;
+    }
+
+    /**
+     * schema.sql을 실행해서 테이블을 다시 만듦
+     */
+    public static void initSchema(DataSource dataSource) {
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+    }
+
+}
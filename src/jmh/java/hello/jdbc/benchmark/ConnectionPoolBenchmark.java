@@ -0,0 +1,82 @@
+package hello.jdbc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.DBConnectionUtil;
+import hello.jdbc.connection.SimpleConnectionPool;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV0;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import static hello.jdbc.benchmark.BenchmarkDatabase.*;
+
+/**
+ * DBConnectionUtil의 커넥션 획득 방식별 MemberRepositoryV0.findById 비용 비교
+ *
+ * - DRIVER_MANAGER: 매번 DriverManager로 커넥션 생성
+ * - SIMPLE_POOL: SimpleConnectionPool
+ * - HIKARI: HikariDataSource
+ * 리포지토리 코드는 같고 DBConnectionUtil.useDataSource()로 지정한 DataSource만 다름
+ *
+ * in-memory DB는 커넥션 생성에 네트워크 왕복이 없으므로, TCP 서버에서는 DRIVER_MANAGER와의 차이가 더 커짐
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConnectionPoolBenchmark {
+
+    private static final String MEMBER_ID = "bench";
+    private static final int POOL_SIZE = 2;
+
+    @Param({"DRIVER_MANAGER", "SIMPLE_POOL", "HIKARI"})
+    public String dataSource;
+
+    private DataSource target;
+    private final MemberRepositoryV0 repository = new MemberRepositoryV0();
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        switch (dataSource) {
+            case "SIMPLE_POOL":
+                target = new SimpleConnectionPool(URL, USERNAME, PASSWORD, POOL_SIZE);
+                break;
+            case "HIKARI":
+                target = hikariDataSource(POOL_SIZE);
+                break;
+            case "DRIVER_MANAGER":
+            default:
+                target = driverManagerDataSource();
+        }
+        initSchema(target);
+        DBConnectionUtil.useDataSource(target);
+        repository.save(new Member(MEMBER_ID, 10000));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DBConnectionUtil.useDataSource(null);
+        if (target instanceof SimpleConnectionPool) {
+            ((SimpleConnectionPool) target).close();
+        } else if (target instanceof HikariDataSource) {
+            ((HikariDataSource) target).close();
+        }
+    }
+
+    @Benchmark
+    public Member findById() throws SQLException {
+        return repository.findById(MEMBER_ID);
+    }
+
+}
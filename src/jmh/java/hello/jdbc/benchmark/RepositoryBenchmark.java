@@ -0,0 +1,283 @@
+package hello.jdbc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.DBConnectionUtil;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV0;
+import hello.jdbc.repository.MemberRepositoryV1;
+import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.repository.MemberRepositoryV4_2;
+import hello.jdbc.repository.MemberRepositoryV5;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 리포지토리 세대(V0~V5)별 save/findById/update/delete 한 번의 비용 비교
+ *
+ * - V0: DBConnectionUtil(DriverManager), 매번 커넥션 생성
+ * - V1_DRIVER_MANAGER / V1_HIKARI: 같은 코드에 DataSource만 바꿨을 때 커넥션 획득 비용 차이
+ * - V3: DataSourceUtils로 커넥션 획득/반납 (트랜잭션 동기화 조회 비용)
+ * - V4_2: V3 + SQLExceptionTranslator로 예외 변환
+ * - V5: JdbcTemplate
+ * V3 이후는 모두 HikariDataSource를 사용하므로 V1_HIKARI와의 차이가 각 추상화 계층의 비용임
+ *
+ * delete는 지울 row가 있어야 하므로 saveAndDelete로 측정 (delete 비용 ≈ saveAndDelete - save)
+ *
+ * ./gradlew jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RepositoryBenchmark {
+
+    private static final String MEMBER_ID = "bench";
+
+    @Param({"V0", "V1_DRIVER_MANAGER", "V1_HIKARI", "V3", "V4_2", "V5"})
+    public Generation generation;
+
+    private Repository repository;
+    private JdbcTemplate cleaner;
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        repository = generation.create();
+        cleaner = new JdbcTemplate(repository.dataSource());
+        BenchmarkDatabase.initSchema(repository.dataSource());
+        repository.save(new Member(MEMBER_ID, 10000));
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearSaved() {
+        // save 벤치마크가 추가한 row를 지워서 iteration마다 테이블 크기를 일정하게 유지
+        cleaner.update("delete from member where member_id like 's%'");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        repository.close();
+    }
+
+    @Benchmark
+    public Member findById() throws SQLException {
+        return repository.findById(MEMBER_ID);
+    }
+
+    @Benchmark
+    public void update() throws SQLException {
+        repository.update(MEMBER_ID, sequence.incrementAndGet());
+    }
+
+    @Benchmark
+    public Member save() throws SQLException {
+        return repository.save(new Member(nextId(), 10000));
+    }
+
+    @Benchmark
+    public void saveAndDelete() throws SQLException {
+        String memberId = nextId();
+        repository.save(new Member(memberId, 10000));
+        repository.delete(memberId);
+    }
+
+    private String nextId() {
+        return "s" + sequence.incrementAndGet();
+    }
+
+    public enum Generation {
+
+        V0 {
+            @Override
+            Repository create() {
+                DataSource dataSource = BenchmarkDatabase.driverManagerDataSource();
+                // DBConnectionUtil이 ConnectionConst(TCP 서버) 대신 in-memory DB에 DriverManager로 접속하도록 전환
+                DBConnectionUtil.useDataSource(dataSource);
+                MemberRepositoryV0 repository = new MemberRepositoryV0();
+                return new Repository(dataSource) {
+                    @Override
+                    Member save(Member member) throws SQLException {
+                        return repository.save(member);
+                    }
+
+                    @Override
+                    Member findById(String memberId) throws SQLException {
+                        return repository.findById(memberId);
+                    }
+
+                    @Override
+                    void update(String memberId, int money) throws SQLException {
+                        repository.update(memberId, money);
+                    }
+
+                    @Override
+                    void delete(String memberId) throws SQLException {
+                        repository.delete(memberId);
+                    }
+
+                    @Override
+                    void close() {
+                        DBConnectionUtil.useDataSource(null);
+                    }
+                };
+            }
+        },
+
+        V1_DRIVER_MANAGER {
+            @Override
+            Repository create() {
+                return v1(BenchmarkDatabase.driverManagerDataSource());
+            }
+        },
+
+        V1_HIKARI {
+            @Override
+            Repository create() {
+                return v1(BenchmarkDatabase.hikariDataSource(POOL_SIZE));
+            }
+        },
+
+        V3 {
+            @Override
+            Repository create() {
+                HikariDataSource dataSource = BenchmarkDatabase.hikariDataSource(POOL_SIZE);
+                MemberRepositoryV3 repository = new MemberRepositoryV3(dataSource);
+                return new Repository(dataSource) {
+                    @Override
+                    Member save(Member member) throws SQLException {
+                        return repository.save(member);
+                    }
+
+                    @Override
+                    Member findById(String memberId) throws SQLException {
+                        return repository.findById(memberId);
+                    }
+
+                    @Override
+                    void update(String memberId, int money) throws SQLException {
+                        repository.update(memberId, money);
+                    }
+
+                    @Override
+                    void delete(String memberId) throws SQLException {
+                        repository.delete(memberId);
+                    }
+                };
+            }
+        },
+
+        V4_2 {
+            @Override
+            Repository create() {
+                HikariDataSource dataSource = BenchmarkDatabase.hikariDataSource(POOL_SIZE);
+                return of(dataSource, new MemberRepositoryV4_2(dataSource));
+            }
+        },
+
+        V5 {
+            @Override
+            Repository create() {
+                HikariDataSource dataSource = BenchmarkDatabase.hikariDataSource(POOL_SIZE);
+                return of(dataSource, new MemberRepositoryV5(dataSource));
+            }
+        };
+
+        private static final int POOL_SIZE = 10;
+
+        abstract Repository create();
+
+        private static Repository v1(DataSource dataSource) {
+            MemberRepositoryV1 repository = new MemberRepositoryV1(dataSource);
+            return new Repository(dataSource) {
+                @Override
+                Member save(Member member) throws SQLException {
+                    return repository.save(member);
+                }
+
+                @Override
+                Member findById(String memberId) throws SQLException {
+                    return repository.findById(memberId);
+                }
+
+                @Override
+                void update(String memberId, int money) throws SQLException {
+                    repository.update(memberId, money);
+                }
+
+                @Override
+                void delete(String memberId) throws SQLException {
+                    repository.delete(memberId);
+                }
+            };
+        }
+
+        private static Repository of(DataSource dataSource, MemberRepository repository) {
+            return new Repository(dataSource) {
+                @Override
+                Member save(Member member) {
+                    return repository.save(member);
+                }
+
+                @Override
+                Member findById(String memberId) {
+                    return repository.findById(memberId);
+                }
+
+                @Override
+                void update(String memberId, int money) {
+                    repository.update(memberId, money);
+                }
+
+                @Override
+                void delete(String memberId) {
+                    repository.delete(memberId);
+                }
+            };
+        }
+    }
+
+    /**
+     * V0~V3는 공통 인터페이스가 없으므로 벤치마크에서 같은 방식으로 호출하기 위한 어댑터
+     */
+    abstract static class Repository {
+
+        private final DataSource dataSource;
+
+        Repository(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        DataSource dataSource() {
+            return dataSource;
+        }
+
+        abstract Member save(Member member) throws SQLException;
+
+        abstract Member findById(String memberId) throws SQLException;
+
+        abstract void update(String memberId, int money) throws SQLException;
+
+        abstract void delete(String memberId) throws SQLException;
+
+        void close() {
+            if (dataSource instanceof HikariDataSource) {
+                ((HikariDataSource) dataSource).close();
+            }
+        }
+    }
+
+}
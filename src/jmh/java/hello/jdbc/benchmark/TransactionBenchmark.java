@@ -0,0 +1,127 @@
+package hello.jdbc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.transaction.TransactionRunner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionManager;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 같은 이체 메서드(TransferLogic.transfer, MemberRepositoryV3로 조회 2번 + 수정 2번)에 트랜잭션을 적용하는 방식별 비교
+ *
+ * - PROXY: @Transactional CGLIB 프록시 (스프링 부트가 만들어주는 것과 같은 TransactionInterceptor)
+ * - TEMPLATE: TransactionTemplate 콜백에서 호출
+ * - RUNNER: TransactionRunner 콜백에서 호출 (프록시, 트랜잭션 속성 조회 없음)
+ * 비즈니스 로직은 한 곳에만 있으므로 결과의 차이는 트랜잭션을 적용하는 방식의 차이뿐임
+ * (MemberServiceV3_3, V3_2, V3_4가 각각 위 방식을 사용하는 서비스)
+ *
+ * 객체 할당량까지 비교하려면 build.gradle의 jmh 설정에 profilers = ['gc'] 추가
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TransactionBenchmark {
+
+    private static final String MEMBER_A = "benchA";
+    private static final String MEMBER_B = "benchB";
+
+    @Param({"PROXY", "TEMPLATE", "RUNNER"})
+    public String transaction;
+
+    private HikariDataSource dataSource;
+    private Transfer transfer;
+    private boolean forward;
+
+    interface Transfer {
+        void transfer(String senderId, String receiverId, int money) throws Exception;
+    }
+
+    /**
+     * 세 방식이 공통으로 호출하는 이체 로직. PROXY에서는 CGLIB 프록시를 만들어야 하므로 public, non-final
+     */
+    public static class TransferLogic {
+
+        private final MemberRepositoryV3 memberRepository;
+
+        public TransferLogic(MemberRepositoryV3 memberRepository) {
+            this.memberRepository = memberRepository;
+        }
+
+        @Transactional
+        public void transfer(String senderId, String receiverId, int money) throws SQLException {
+            Member sender = memberRepository.findById(senderId);
+            Member receiver = memberRepository.findById(receiverId);
+
+            memberRepository.update(senderId, sender.getMoney() - money);
+            memberRepository.update(receiverId, receiver.getMoney() + money);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dataSource = BenchmarkDatabase.hikariDataSource(1);
+        BenchmarkDatabase.initSchema(dataSource);
+        MemberRepositoryV3 memberRepository = new MemberRepositoryV3(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        TransferLogic logic = new TransferLogic(memberRepository);
+
+        switch (transaction) {
+            case "PROXY":
+                ProxyFactory proxyFactory = new ProxyFactory(logic);
+                proxyFactory.setProxyTargetClass(true);
+                proxyFactory.addAdvice(new TransactionInterceptor((TransactionManager) transactionManager, new AnnotationTransactionAttributeSource()));
+                transfer = ((TransferLogic) proxyFactory.getProxy())::transfer;
+                break;
+            case "TEMPLATE":
+                TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+                transfer = (senderId, receiverId, money) -> transactionTemplate.executeWithoutResult(status -> {
+                    try {
+                        logic.transfer(senderId, receiverId, money);
+                    } catch (SQLException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+                break;
+            case "RUNNER":
+            default:
+                TransactionRunner transactionRunner = new TransactionRunner(dataSource);
+                transfer = (senderId, receiverId, money) ->
+                        transactionRunner.runWithoutResult(con -> logic.transfer(senderId, receiverId, money));
+        }
+
+        memberRepository.save(new Member(MEMBER_A, 1_000_000));
+        memberRepository.save(new Member(MEMBER_B, 1_000_000));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @Benchmark
+    public void transfer() throws Exception {
+        // 잔고가 바닥나지 않도록 번갈아 가며 반대 방향으로 이체
+        forward = !forward;
+        transfer.transfer(forward ? MEMBER_A : MEMBER_B, forward ? MEMBER_B : MEMBER_A, 1);
+    }
+
+}
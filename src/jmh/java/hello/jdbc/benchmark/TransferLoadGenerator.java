@@ -0,0 +1,342 @@
+package hello.jdbc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.metrics.LatencyHistogram;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV1;
+import hello.jdbc.repository.MemberRepositoryV2;
+import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.repository.ShardedHotAccountMemberRepository;
+import hello.jdbc.service.MemberServiceV1;
+import hello.jdbc.service.MemberServiceV2;
+import hello.jdbc.service.MemberServiceV3_1;
+import hello.jdbc.service.MemberServiceV3_2;
+import hello.jdbc.service.MemberServiceV3_3;
+import hello.jdbc.service.MemberServiceV3_3ForUpdate;
+import hello.jdbc.service.MemberServiceV4;
+import hello.jdbc.service.TransferStrategy;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionManager;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * MemberServiceV1~V4에 여러 스레드로 동시에 이체를 요청하는 부하 테스트
+ *
+ * - 보내는/받는 회원은 Zipf 분포로 고름 (zipf=0이면 균등, 클수록 소수의 회원에 몰림)
+ * - failureRate 비율만큼은 받는 회원을 "ex"로 지정해서 이체 도중 예외가 발생하도록 함
+ * - 끝나면 처리량, 지연시간(p50/p99/p999), 실패(롤백) 수를 예외 종류별로 출력하고
+ *   전체 회원의 잔고 합계가 처음과 같은지(돈이 새거나 생기지 않았는지) 확인함
+ *
+ * 지연시간은 LatencyHistogram(2배 간격 bucket)으로 기록하므로 percentile은 bucket 상한값임
+ * V1은 트랜잭션이 없고, V1~V3_3과 V4(READ_MODIFY_WRITE)는 lock 없이 조회 후 수정하므로 동시 이체에서 잔고 합계가 맞지 않을 수 있음
+ *
+ * ./gradlew loadTest -Pargs="--service=V4 --strategy=PESSIMISTIC_LOCK --threads=64 --accounts=1000 --zipf=1.2 --failureRate=0.01 --seconds=10"
+ * --url을 지정하지 않으면 in-memory H2(BenchmarkDatabase)를 사용
+ *
+ * --profile로 자주 쓰는 부하 형태의 기본값을 지정할 수 있음 (직접 지정한 옵션이 우선함)
+ * - contention: 회원 두 명 사이의 양방향 이체만 발생 (A<->B). V4의 이체 방식(--strategy)별 처리량, abort 비교용
+ * - hotReceiver: 모든 이체가 회원 한 명(m0, 가맹점)에게 입금됨. --hotSlots=N을 지정하면 m0의 잔고를
+ *   ShardedHotAccountMemberRepository로 N개의 row에 나누어 저장하므로, 지정하지 않았을 때(단일 row)와 처리량을 비교할 수 있음
+ */
+public class TransferLoadGenerator {
+
+    private static final String MEMBER_EX = "ex";
+    private static final int INITIAL_MONEY = 1_000_000;
+    private static final int TRANSFER_MONEY = 1;
+
+    public enum Service {
+        V1, V2, V3_1, V3_2, V3_3, V3_3_FOR_UPDATE, V4
+    }
+
+    interface Transfer {
+        void transfer(String senderId, String receiverId, int money) throws Exception;
+    }
+
+    private final Map<String, String> options;
+    private final Service service;
+    private final int threads;
+    private final int accounts;
+    private final double failureRate;
+    private final boolean hotReceiver;
+    private final int hotSlots;
+    private final long durationNanos;
+    private final ZipfDistribution distribution;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder successes = new LongAdder();
+    private final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+
+    TransferLoadGenerator(Map<String, String> options) {
+        options = withProfileDefaults(options);
+        this.options = options;
+        this.service = Service.valueOf(options.getOrDefault("service", "V4"));
+        this.threads = Integer.parseInt(options.getOrDefault("threads", "64"));
+        this.accounts = Integer.parseInt(options.getOrDefault("accounts", "1000"));
+        this.failureRate = Double.parseDouble(options.getOrDefault("failureRate", "0.01"));
+        this.hotReceiver = "hotReceiver".equals(options.get("profile"));
+        this.hotSlots = Integer.parseInt(options.getOrDefault("hotSlots", "0"));
+        if (hotSlots > 0 && service != Service.V4) {
+            throw new IllegalArgumentException("--hotSlots is only supported with --service=V4");
+        }
+        this.durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("seconds", "10")));
+        this.distribution = new ZipfDistribution(accounts, Double.parseDouble(options.getOrDefault("zipf", "1.0")));
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        boolean conserved = new TransferLoadGenerator(parse(args)).run();
+        // 잔고 합계가 맞지 않으면 실패로 종료 (CI에서 확인할 수 있도록)
+        System.exit(conserved ? 0 : 1);
+    }
+
+    boolean run() throws InterruptedException {
+        try (HikariDataSource dataSource = dataSource()) {
+            BenchmarkDatabase.initSchema(dataSource);
+            JdbcTemplate template = new JdbcTemplate(dataSource);
+            insertMembers(template);
+            long expectedTotal = totalMoney(template);
+
+            Transfer transfer = transfer(dataSource);
+            long elapsedNanos = runWorkers(transfer);
+
+            long actualTotal = totalMoney(template);
+            report(elapsedNanos, expectedTotal, actualTotal);
+            return expectedTotal == actualTotal;
+        }
+    }
+
+    private HikariDataSource dataSource() {
+        HikariDataSource dataSource = BenchmarkDatabase.hikariDataSource(threads);
+        if (options.containsKey("url")) {
+            dataSource.setJdbcUrl(options.get("url"));
+        }
+        return dataSource;
+    }
+
+    private Transfer transfer(HikariDataSource dataSource) {
+        PlatformTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        switch (service) {
+            case V1:
+                return new MemberServiceV1(new MemberRepositoryV1(dataSource))::transfer;
+            case V2:
+                return new MemberServiceV2(dataSource, new MemberRepositoryV2(dataSource))::transfer;
+            case V3_1:
+                return new MemberServiceV3_1(transactionManager, new MemberRepositoryV3(dataSource))::transfer;
+            case V3_2:
+                return new MemberServiceV3_2(transactionManager, new MemberRepositoryV3(dataSource))::transfer;
+            case V3_3:
+                return transactionalProxy(new MemberServiceV3_3(new MemberRepositoryV3(dataSource)), transactionManager)::transfer;
+            case V3_3_FOR_UPDATE:
+                return transactionalProxy(new MemberServiceV3_3ForUpdate(new MemberRepositoryV3(dataSource)), transactionManager)::transfer;
+            case V4:
+            default:
+                TransferStrategy strategy = TransferStrategy.valueOf(options.getOrDefault("strategy", "READ_MODIFY_WRITE"));
+                MemberRepository repository = new MemberRepositoryV5(dataSource);
+                if (hotSlots > 0) {
+                    ShardedHotAccountMemberRepository sharded =
+                            new ShardedHotAccountMemberRepository(repository, dataSource, Set.of(memberId(0)), hotSlots);
+                    sharded.initializeSlots(memberId(0));
+                    repository = sharded;
+                }
+                return transactionalProxy(new MemberServiceV4(repository, strategy), transactionManager)::transfer;
+        }
+    }
+
+    /**
+     * 스프링 컨테이너 없이 @Transactional을 적용한 프록시 생성 (스프링 부트의 자동 설정과 같은 CGLIB 프록시)
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T transactionalProxy(T target, TransactionManager transactionManager) {
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(new TransactionInterceptor(transactionManager, new AnnotationTransactionAttributeSource()));
+        return (T) proxyFactory.getProxy();
+    }
+
+    private void insertMembers(JdbcTemplate template) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < accounts; i++) {
+            rows.add(new Object[]{memberId(i), INITIAL_MONEY});
+        }
+        rows.add(new Object[]{MEMBER_EX, INITIAL_MONEY});
+        template.update("delete from member");
+        if (hotSlots > 0) {
+            template.update("delete from member_sub_balance");
+        }
+        template.batchUpdate("insert into member(member_id, money) values (?, ?)", rows);
+    }
+
+    // hot 회원의 잔고는 member_sub_balance에도 나뉘어 있으므로 함께 합산
+    private long totalMoney(JdbcTemplate template) {
+        long total = template.queryForObject("select coalesce(sum(money), 0) from member", Long.class);
+        if (hotSlots > 0) {
+            total += template.queryForObject("select coalesce(sum(money), 0) from member_sub_balance", Long.class);
+        }
+        return total;
+    }
+
+    private long runWorkers(Transfer transfer) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long[] deadline = new long[1];
+
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    while (System.nanoTime() < deadline[0]) {
+                        transferOnce(transfer);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }, "load-" + t);
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        long startNanos = System.nanoTime();
+        deadline[0] = startNanos + durationNanos;
+        start.countDown();
+        done.await();
+        return System.nanoTime() - startNanos;
+    }
+
+    private void transferOnce(Transfer transfer) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int sender;
+        do {
+            sender = distribution.sample(random);
+        } while (hotReceiver && sender == 0 && accounts > 1);
+        String senderId = memberId(sender);
+        String receiverId;
+        if (random.nextDouble() < failureRate) {
+            receiverId = MEMBER_EX;
+        } else if (hotReceiver) {
+            receiverId = memberId(0);
+        } else {
+            int receiver;
+            do {
+                receiver = distribution.sample(random);
+            } while (receiver == sender && accounts > 1);
+            receiverId = memberId(receiver);
+        }
+
+        long start = System.nanoTime();
+        try {
+            transfer.transfer(senderId, receiverId, TRANSFER_MONEY);
+            successes.increment();
+        } catch (Exception e) {
+            failures.computeIfAbsent(rootCause(e).getClass().getSimpleName(), key -> new LongAdder()).increment();
+        } finally {
+            latency.record(System.nanoTime() - start);
+        }
+    }
+
+    private void report(long elapsedNanos, long expectedTotal, long actualTotal) {
+        double seconds = elapsedNanos / 1_000_000_000.0;
+        long successCount = successes.sum();
+        long failureCount = failures.values().stream().mapToLong(LongAdder::sum).sum();
+
+        System.out.printf("service=%s, options=%s%n", service, options);
+        System.out.printf("transfers=%d, success=%d, failed(rollback)=%d, throughput=%.0f/s%n",
+                successCount + failureCount, successCount, failureCount, successCount / seconds);
+        System.out.printf("latency p50=%dus, p99=%dus, p999=%dus, max=%dus%n",
+                micros(latency.getPercentileNanos(0.50)), micros(latency.getPercentileNanos(0.99)),
+                micros(latency.getPercentileNanos(0.999)), micros(latency.getMaxNanos()));
+        Map<String, Long> failureCounts = new HashMap<>();
+        failures.forEach((type, count) -> failureCounts.put(type, count.sum()));
+        System.out.printf("failures by cause=%s%n", failureCounts);
+        System.out.printf("money conservation: expected=%d, actual=%d -> %s%n",
+                expectedTotal, actualTotal, expectedTotal == actualTotal ? "OK" : "VIOLATED (" + (actualTotal - expectedTotal) + ")");
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private static Throwable rootCause(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private static String memberId(int index) {
+        return "m" + index;
+    }
+
+    private static Map<String, String> withProfileDefaults(Map<String, String> options) {
+        Map<String, String> merged = new HashMap<>();
+        String profile = options.get("profile");
+        if ("contention".equals(profile)) {
+            merged.put("accounts", "2");
+            merged.put("zipf", "0");
+            merged.put("failureRate", "0");
+        } else if ("hotReceiver".equals(profile)) {
+            // sub row 분산은 addMoney()로 입금할 때만 효과가 있으므로 SINGLE_STATEMENT가 기본값
+            merged.put("strategy", "SINGLE_STATEMENT");
+            merged.put("zipf", "0");
+            merged.put("failureRate", "0");
+        } else if (profile != null) {
+            throw new IllegalArgumentException("Unknown profile: " + profile);
+        }
+        merged.putAll(options);
+        return merged;
+    }
+
+    // --key=value 형식의 인자
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        Arrays.stream(args)
+                .filter(arg -> arg.startsWith("--") && arg.contains("="))
+                .forEach(arg -> options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1)));
+        return options;
+    }
+
+    /**
+     * 0 ~ n-1 중에서 k번째가 1/(k+1)^skew에 비례하는 확률로 뽑히는 Zipf 분포 (누적 확률을 미리 계산해서 이분 탐색)
+     */
+    static class ZipfDistribution {
+
+        private final double[] cumulative;
+
+        ZipfDistribution(int n, double skew) {
+            cumulative = new double[n];
+            double sum = 0;
+            for (int k = 0; k < n; k++) {
+                sum += 1.0 / Math.pow(k + 1, skew);
+                cumulative[k] = sum;
+            }
+            for (int k = 0; k < n; k++) {
+                cumulative[k] /= sum;
+            }
+        }
+
+        int sample(ThreadLocalRandom random) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble());
+            return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+        }
+    }
+
+}
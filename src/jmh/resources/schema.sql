@@ -0,0 +1,21 @@
+-- 벤치마크용 in-memory DB의 테이블을 새로 만드는 스크립트 (H2, BenchmarkDatabase.initSchema)
+-- 기존 테이블을 지우므로 TCP 서버의 DB에는 실행하지 말 것. 기존 DB는 src/main/resources/db/upgrade.sql로 변경
+-- version: 낙관적 락을 위한 컬럼. MemberRepository 구현체들의 모든 수정 쿼리에서 1씩 증가시킴
+drop table member if exists cascade;
+create table member (
+    member_id varchar(10),
+    money integer not null default 0,
+    version bigint not null default 0,
+    primary key (member_id)
+);
+
+-- member_sub_balance: 입금이 몰리는 회원(hot account)의 잔고를 slot개의 row로 나누어 저장 (ShardedHotAccountMemberRepository)
+-- 실제 잔고 = member.money + sum(member_sub_balance.money)
+drop table member_sub_balance if exists;
+create table member_sub_balance (
+    member_id varchar(10),
+    slot integer not null,
+    money integer not null default 0,
+    version bigint not null default 0,
+    primary key (member_id, slot)
+);
@@ -0,0 +1,54 @@
+package hello.jdbc.connection;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.sql.Wrapper;
+import java.util.List;
+
+/**
+ * 커넥션/statement를 사용한 애플리케이션 코드의 위치(클래스.메서드)를 찾는 도우미
+ *
+ * JDK, 스프링, 커넥션 풀, 드라이버 프레임과 이 패키지의 DataSource/프록시 프레임을 건너뛴 첫 번째 프레임을 사용함.
+ * 스프링 AOP(CGLIB) 프록시 프레임은 원래 클래스 이름으로 바꾸므로, 트랜잭션 커넥션은 @Transactional 메서드 기준으로 기록됨
+ */
+final class CallerLocator {
+
+    private static final List<String> INFRASTRUCTURE_PREFIXES = List.of(
+            "java.", "javax.", "jdk.", "sun.", "com.sun.", "org.springframework.", "com.zaxxer.", "org.h2.");
+
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+    private CallerLocator() {
+    }
+
+    static String find() {
+        return STACK_WALKER
+                .walk(frames -> frames
+                        .filter(frame -> !isInfrastructure(frame.getDeclaringClass()))
+                        .findFirst()
+                        .map(frame -> simpleName(frame.getClassName()) + "." + frame.getMethodName())
+                        .orElse("unknown"));
+    }
+
+    private static boolean isInfrastructure(Class<?> type) {
+        // DataSource 데코레이터, JDBC 프록시(Connection, PreparedStatement)와 그 InvocationHandler
+        if (type == CallerLocator.class || DataSource.class.isAssignableFrom(type) || Wrapper.class.isAssignableFrom(type)
+                || InvocationHandler.class.isAssignableFrom(type) || type == DBConnectionUtil.class) {
+            return true;
+        }
+        String className = type.getName();
+        for (String prefix : INFRASTRUCTURE_PREFIXES) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String simpleName(String className) {
+        int proxySuffix = className.indexOf("$$");
+        String name = proxySuffix >= 0 ? className.substring(0, proxySuffix) : className;
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+}
@@ -2,6 +2,7 @@ package hello.jdbc.connection;
 
 import lombok.extern.slf4j.Slf4j;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
@@ -11,8 +12,16 @@ import static hello.jdbc.connection.ConnectionConst.*;
 @Slf4j
 public class DBConnectionUtil {
 
+    // 지정되면 DriverManager 대신 이 DataSource에서 커넥션을 획득 (ex. SimpleConnectionPool, HikariDataSource)
+    private static volatile DataSource dataSource;
+
     public static Connection getConnection() {
         try {
+            DataSource currentDataSource = dataSource;
+            if (currentDataSource != null) {
+                return currentDataSource.getConnection();
+            }
+
             /*
             DriverManager가 라이브러리 목록에서 적합한 DB Driver를 찾아서 커넥션 생성 시도
             Connection 인터페이스를 구현하고 있는 org.h2.jdbc.JdbcConnection 객체를 반환함
@@ -25,4 +34,11 @@ public class DBConnectionUtil {
         }
     }
 
+    /**
+     * 이후의 getConnection() 호출이 주어진 DataSource를 사용하도록 전환. null을 넘기면 다시 DriverManager를 사용함
+     */
+    public static void useDataSource(DataSource dataSource) {
+        DBConnectionUtil.dataSource = dataSource;
+    }
+
 }
@@ -0,0 +1,308 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import hello.jdbc.metrics.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 커넥션 획득 시간과 보유 시간을 기록하는 DataSource 데코레이터
+ *
+ * - 획득 시간(acquire): getConnection() 호출부터 커넥션을 받기까지. 길면 커넥션 풀에서 기다리고 있다는 뜻
+ * - 보유 시간(hold): 커넥션을 받은 뒤 close() 하기까지. 트랜잭션이라면 트랜잭션 전체 시간이며, 길면 DB 작업이 느리다는 뜻
+ * - trackCallers가 true면 호출한 곳(리포지토리/서비스 메서드)별로도 따로 기록.
+ *   호출한 곳을 찾으려면 getConnection()마다 stack을 훑어야 하므로 기본값은 false
+ * - leakThreshold가 지정되면 그보다 오래 반납되지 않은 커넥션을 획득한 위치의 stack trace와 함께 경고 로그로 남김
+ *
+ * 리포지토리와 DataSourceTransactionManager에 같은 InstrumentedDataSource 인스턴스를 넘겨야
+ * 트랜잭션 동기화가 동작하고(같은 DataSource를 key로 커넥션을 보관하므로) 트랜잭션 커넥션도 함께 기록됨
+ */
+@Slf4j
+public class InstrumentedDataSource extends DelegatingDataSource implements AutoCloseable {
+
+    private final long leakThresholdNanos;
+    private final boolean trackCallers;
+
+    private final LatencyHistogram acquire = new LatencyHistogram();
+    private final LatencyHistogram hold = new LatencyHistogram();
+    private final Map<String, CallerStats> callers = new ConcurrentHashMap<>();
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger acquiring = new AtomicInteger();
+    private final LongAdder acquireFailures = new LongAdder();
+    private final LongAdder leaks = new LongAdder();
+
+    private final Set<ConnectionHandler> openConnections = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService leakDetector;
+
+    public InstrumentedDataSource(DataSource targetDataSource) {
+        this(targetDataSource, Duration.ZERO);
+    }
+
+    public InstrumentedDataSource(DataSource targetDataSource, Duration leakThreshold) {
+        this(targetDataSource, leakThreshold, false);
+    }
+
+    public InstrumentedDataSource(DataSource targetDataSource, Duration leakThreshold, boolean trackCallers) {
+        super(targetDataSource);
+        this.leakThresholdNanos = leakThreshold.toNanos();
+        this.trackCallers = trackCallers;
+
+        if (leakThresholdNanos > 0) {
+            leakDetector = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "connection-leak-detector");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long periodNanos = Math.max(leakThresholdNanos / 2, TimeUnit.MILLISECONDS.toNanos(100));
+            leakDetector.scheduleWithFixedDelay(this::detectLeaks, periodNanos, periodNanos, TimeUnit.NANOSECONDS);
+        } else {
+            leakDetector = null;
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return instrument(() -> obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return instrument(() -> obtainTargetDataSource().getConnection(username, password));
+    }
+
+    private Connection instrument(ConnectionSupplier target) throws SQLException {
+        // 호출한 곳 기록이나 leak 감지가 켜진 경우에만 stack을 훑음 (비용이 크기 때문)
+        String caller = trackCallers || leakThresholdNanos > 0 ? CallerLocator.find() : null;
+        Throwable acquiredAt = leakThresholdNanos > 0 ? new Throwable("Connection acquired by " + caller) : null;
+
+        acquiring.incrementAndGet();
+        long start = System.nanoTime();
+        Connection con;
+        try {
+            con = target.get();
+        } catch (SQLException | RuntimeException e) {
+            acquireFailures.increment();
+            throw e;
+        } finally {
+            acquiring.decrementAndGet();
+        }
+
+        long acquiredNanos = System.nanoTime();
+        long acquireNanos = acquiredNanos - start;
+        acquire.record(acquireNanos);
+        CallerStats stats = null;
+        if (trackCallers) {
+            stats = callers.computeIfAbsent(caller, key -> new CallerStats());
+            stats.acquire.record(acquireNanos);
+        }
+
+        ConnectionHandler handler = new ConnectionHandler(con, caller, stats, acquiredNanos, acquiredAt);
+        active.incrementAndGet();
+        if (leakDetector != null) {
+            openConnections.add(handler);
+        }
+
+        return (Connection) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[]{Connection.class},
+                handler);
+    }
+
+    @Override
+    public void close() {
+        if (leakDetector != null) {
+            leakDetector.shutdownNow();
+        }
+    }
+
+    public LatencyHistogram getAcquireHistogram() {
+        return acquire;
+    }
+
+    public LatencyHistogram getHoldHistogram() {
+        return hold;
+    }
+
+    // key: 커넥션을 획득한 클래스.메서드 (trackCallers가 false면 비어 있음)
+    public Map<String, CallerStats> getCallerStats() {
+        return Collections.unmodifiableMap(callers);
+    }
+
+    // 이 DataSource를 통해 빌려간 뒤 아직 반납하지 않은 커넥션 수
+    public int getActiveConnections() {
+        return active.get();
+    }
+
+    // 지금 getConnection() 안에서 커넥션을 기다리고 있는 스레드 수
+    public int getPendingAcquires() {
+        return acquiring.get();
+    }
+
+    // 대상 커넥션 풀의 idle 커넥션 수. 풀 정보를 알 수 없으면 -1
+    public int getPoolIdleConnections() {
+        HikariPoolMXBean hikariPool = hikariPool();
+        if (hikariPool != null) {
+            return hikariPool.getIdleConnections();
+        }
+        SimpleConnectionPool simplePool = unwrapTarget(SimpleConnectionPool.class);
+        return simplePool != null ? simplePool.getIdleConnections() : -1;
+    }
+
+    // 대상 커넥션 풀에서 커넥션을 기다리는 스레드 수. 풀 정보를 알 수 없으면 -1
+    public int getPoolWaitingThreads() {
+        HikariPoolMXBean hikariPool = hikariPool();
+        if (hikariPool != null) {
+            return hikariPool.getThreadsAwaitingConnection();
+        }
+        SimpleConnectionPool simplePool = unwrapTarget(SimpleConnectionPool.class);
+        return simplePool != null ? simplePool.getWaitingThreads() : -1;
+    }
+
+    public long getAcquireFailureCount() {
+        return acquireFailures.sum();
+    }
+
+    // leakThreshold보다 오래 보유되어 경고한 커넥션 수
+    public long getLeakCount() {
+        return leaks.sum();
+    }
+
+    /**
+     * leakThreshold보다 오래 반납되지 않은 커넥션을 찾아서 경고 (커넥션마다 한 번만)
+     */
+    public synchronized void detectLeaks() {
+        long now = System.nanoTime();
+        for (ConnectionHandler handler : openConnections) {
+            long heldNanos = now - handler.acquiredNanos;
+            if (heldNanos > leakThresholdNanos && !handler.leakReported) {
+                handler.leakReported = true;
+                leaks.increment();
+                log.warn("Connection held for {}ms by {}, possible leak",
+                        TimeUnit.NANOSECONDS.toMillis(heldNanos), handler.caller, handler.acquiredAt);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "acquire[" + acquire + "], hold[" + hold + "], active=" + getActiveConnections()
+                + ", poolIdle=" + getPoolIdleConnections() + ", poolWaiting=" + getPoolWaitingThreads();
+    }
+
+    private HikariPoolMXBean hikariPool() {
+        HikariDataSource hikari = unwrapTarget(HikariDataSource.class);
+        return hikari != null ? hikari.getHikariPoolMXBean() : null;
+    }
+
+    private <T> T unwrapTarget(Class<T> type) {
+        DataSource target = obtainTargetDataSource();
+        try {
+            return target.isWrapperFor(type) ? target.unwrap(type) : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 호출한 곳 하나의 획득/보유 시간
+     */
+    public static class CallerStats {
+
+        private final LatencyHistogram acquire = new LatencyHistogram();
+        private final LatencyHistogram hold = new LatencyHistogram();
+
+        public LatencyHistogram getAcquireHistogram() {
+            return acquire;
+        }
+
+        public LatencyHistogram getHoldHistogram() {
+            return hold;
+        }
+
+        @Override
+        public String toString() {
+            return "acquire[" + acquire + "], hold[" + hold + "]";
+        }
+    }
+
+    // getConnection(), getConnection(username, password) 모두 같은 경로로 기록하기 위한 대상 커넥션 획득 함수
+    private interface ConnectionSupplier {
+        Connection get() throws SQLException;
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+        private final String caller;
+        private final CallerStats stats;
+        private final long acquiredNanos;
+        private final Throwable acquiredAt;
+        private volatile boolean leakReported;
+        private boolean closed;
+
+        ConnectionHandler(Connection target, String caller, CallerStats stats, long acquiredNanos, Throwable acquiredAt) {
+            this.target = target;
+            this.caller = caller;
+            this.stats = stats;
+            this.acquiredNanos = acquiredNanos;
+            this.acquiredAt = acquiredAt;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+
+            if (name.equals("close")) {
+                if (!closed) {
+                    closed = true;
+                    released();
+                }
+                target.close();
+                return null;
+            }
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+
+        private void released() {
+            long holdNanos = System.nanoTime() - acquiredNanos;
+            hold.record(holdNanos);
+            if (stats != null) {
+                stats.hold.record(holdNanos);
+            }
+            active.decrementAndGet();
+            openConnections.remove(this);
+        }
+    }
+
+}
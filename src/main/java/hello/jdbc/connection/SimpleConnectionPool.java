@@ -0,0 +1,420 @@
+package hello.jdbc.connection;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * 스프링 없이 사용할 수 있는 간단한 커넥션 풀
+ *
+ * - 쉬고 있는 커넥션은 lock-free 스택(Treiber stack)에 보관. 가장 최근에 반납된 커넥션부터 다시 사용하므로 오래 안 쓰인 커넥션은 스택 아래쪽에 모임
+ * - 동시에 빌려줄 수 있는 커넥션 수는 maximumPoolSize개로 제한하고, 빌릴 수 없으면 acquireTimeout 동안 기다린 뒤 SQLTransientConnectionException 발생
+ * - idleTimeout보다 오래 쉬고 있던 커넥션은 백그라운드 스레드가 닫음 (warmUpSize개는 남겨둠)
+ * - 빌려줄 때 일정 시간 이상 쉬고 있던 커넥션은 isValid()로 확인하고, 끊어진 커넥션이면 버리고 다른 커넥션을 줌
+ * - 생성 시점에 warmUpSize개의 커넥션을 미리 만들어둠
+ *
+ * 반환되는 커넥션은 프록시이며 close() 하면 물리 커넥션을 닫지 않고 풀에 반납함. unwrap(Connection.class)로 물리 커넥션을 얻을 수 있음
+ */
+@Slf4j
+public class SimpleConnectionPool implements DataSource, AutoCloseable {
+
+    public static final Duration DEFAULT_ACQUIRE_TIMEOUT = Duration.ofSeconds(30);
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(10);
+
+    // 최근에 사용된 커넥션은 isValid() 확인을 생략 (매번 확인하면 빌릴 때마다 DB와 왕복하게 됨)
+    private static final long VALIDATION_BYPASS_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int maximumPoolSize;
+    private final int warmUpSize;
+    private final long acquireTimeoutNanos;
+    private final long idleTimeoutNanos;
+
+    private final AtomicReference<Node> idle = new AtomicReference<>();
+    private final Semaphore permits;
+    // 풀이 관리하는 전체 물리 커넥션 수 (빌려준 커넥션 + 쉬고 있는 커넥션)
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    public SimpleConnectionPool(String url, String username, String password, int maximumPoolSize) {
+        this(url, username, password, maximumPoolSize, 0, DEFAULT_ACQUIRE_TIMEOUT, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    public SimpleConnectionPool(String url, String username, String password, int maximumPoolSize, int warmUpSize,
+                                Duration acquireTimeout, Duration idleTimeout) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.maximumPoolSize = maximumPoolSize;
+        this.warmUpSize = Math.min(warmUpSize, maximumPoolSize);
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.permits = new Semaphore(maximumPoolSize);
+
+        warmUp();
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "simple-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long evictionPeriodNanos = Math.max(idleTimeoutNanos / 2, TimeUnit.SECONDS.toNanos(1));
+        evictor.scheduleWithFixedDelay(this::evictIdleConnections, evictionPeriodNanos, evictionPeriodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("SimpleConnectionPool is closed");
+        }
+
+        long deadline = System.nanoTime() + acquireTimeoutNanos;
+        try {
+            if (!permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw timeout();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection", e);
+        }
+
+        try {
+            return borrow(deadline);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("SimpleConnectionPool uses the configured username/password");
+    }
+
+    /**
+     * 더 이상 커넥션을 빌려주지 않고, 쉬고 있는 커넥션을 모두 닫음. 빌려간 커넥션은 반납될 때 닫힘
+     */
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = pop()) != null) {
+            destroy(pooled);
+        }
+    }
+
+    public int getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    public int getActiveConnections() {
+        return maximumPoolSize - permits.availablePermits();
+    }
+
+    public int getIdleConnections() {
+        int count = 0;
+        for (Node node = idle.get(); node != null; node = node.next) {
+            count++;
+        }
+        return count;
+    }
+
+    // 커넥션을 기다리고 있는 스레드 수 (추정치)
+    public int getWaitingThreads() {
+        return permits.getQueueLength();
+    }
+
+    private Connection borrow(long deadline) throws SQLException {
+        while (true) {
+            PooledConnection pooled = pop();
+            if (pooled != null) {
+                if (isUsable(pooled)) {
+                    return pooled.lend();
+                }
+                destroy(pooled);
+                continue;
+            }
+
+            if (totalConnections.incrementAndGet() <= maximumPoolSize) {
+                try {
+                    return create().lend();
+                } catch (SQLException | RuntimeException e) {
+                    totalConnections.decrementAndGet();
+                    throw e;
+                }
+            }
+            totalConnections.decrementAndGet();
+
+            // 빌려준 커넥션은 maximumPoolSize보다 적으므로, evictor가 잠시 꺼내간 커넥션이 곧 스택에 돌아옴
+            if (System.nanoTime() - deadline > 0) {
+                throw timeout();
+            }
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+    }
+
+    private boolean isUsable(PooledConnection pooled) {
+        long idleNanos = System.nanoTime() - pooled.lastReturnedAt;
+        if (idleTimeoutNanos > 0 && idleNanos > idleTimeoutNanos) {
+            return false;
+        }
+        if (idleNanos < VALIDATION_BYPASS_NANOS) {
+            return true;
+        }
+        try {
+            return pooled.physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection create() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, username, password);
+        log.debug("Created pooled connection={}, total={}", physical, totalConnections.get());
+        return new PooledConnection(physical);
+    }
+
+    private void destroy(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            log.warn("Failed to close pooled connection", e);
+        }
+    }
+
+    private void giveBack(PooledConnection pooled) {
+        try {
+            // 커밋/롤백 없이 반납된 트랜잭션은 롤백하고 기본 상태로 되돌림
+            if (!pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+            pooled.physical.clearWarnings();
+        } catch (SQLException e) {
+            log.warn("Discarding broken connection", e);
+            destroy(pooled);
+            permits.release();
+            return;
+        }
+
+        if (closed) {
+            destroy(pooled);
+        } else {
+            pooled.lastReturnedAt = System.nanoTime();
+            push(pooled);
+        }
+        permits.release();
+    }
+
+    private void warmUp() {
+        for (int i = 0; i < warmUpSize; i++) {
+            totalConnections.incrementAndGet();
+            try {
+                push(create());
+            } catch (SQLException e) {
+                totalConnections.decrementAndGet();
+                log.warn("Connection pool warm-up failed, connections will be created on demand", e);
+                return;
+            }
+        }
+    }
+
+    // 스택을 통째로 비운 뒤 오래 쉰 커넥션만 닫고 나머지는 다시 넣음
+    private void evictIdleConnections() {
+        if (idleTimeoutNanos <= 0) {
+            return;
+        }
+
+        List<PooledConnection> drained = new ArrayList<>();
+        PooledConnection pooled;
+        while ((pooled = pop()) != null) {
+            drained.add(pooled);
+        }
+
+        long now = System.nanoTime();
+        int evicted = 0;
+        // 가장 최근에 반납된 커넥션이 스택 맨 위에 오도록 역순으로 다시 넣음
+        for (int i = drained.size() - 1; i >= 0; i--) {
+            PooledConnection candidate = drained.get(i);
+            boolean expired = now - candidate.lastReturnedAt > idleTimeoutNanos;
+            if (expired && totalConnections.get() > warmUpSize) {
+                destroy(candidate);
+                evicted++;
+            } else {
+                push(candidate);
+            }
+        }
+        if (evicted > 0) {
+            log.debug("Evicted idle connections={}, total={}", evicted, totalConnections.get());
+        }
+    }
+
+    private void push(PooledConnection pooled) {
+        Node node = new Node(pooled);
+        do {
+            node.next = idle.get();
+        } while (!idle.compareAndSet(node.next, node));
+    }
+
+    private PooledConnection pop() {
+        while (true) {
+            Node head = idle.get();
+            if (head == null) {
+                return null;
+            }
+            if (idle.compareAndSet(head, head.next)) {
+                return head.connection;
+            }
+        }
+    }
+
+    private SQLTransientConnectionException timeout() {
+        return new SQLTransientConnectionException("Connection is not available, request timed out after "
+                + TimeUnit.NANOSECONDS.toMillis(acquireTimeoutNanos) + "ms (active=" + getActiveConnections()
+                + ", waiting=" + getWaitingThreads() + ")");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return DriverManager.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        DriverManager.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("SimpleConnectionPool is not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    // 새 Node를 매번 만들기 때문에 같은 Node가 스택에 다시 들어오는 일이 없음 (ABA 문제 없음)
+    private static class Node {
+
+        private final PooledConnection connection;
+        private Node next;
+
+        Node(PooledConnection connection) {
+            this.connection = connection;
+        }
+    }
+
+    private class PooledConnection {
+
+        private final Connection physical;
+        private volatile long lastReturnedAt = System.nanoTime();
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        Connection lend() {
+            return (Connection) Proxy.newProxyInstance(
+                    getClass().getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new ConnectionHandler(this));
+        }
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+
+        private final PooledConnection pooled;
+        private boolean closed;
+
+        ConnectionHandler(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+
+            if (name.equals("close")) {
+                if (!closed) {
+                    closed = true;
+                    giveBack(pooled);
+                }
+                return null;
+            }
+            if (name.equals("isClosed")) {
+                return closed || pooled.physical.isClosed();
+            }
+            if (name.equals("unwrap") && ((Class<?>) args[0]).isInstance(pooled.physical)) {
+                return pooled.physical;
+            }
+            if (name.equals("isWrapperFor") && ((Class<?>) args[0]).isInstance(pooled.physical)) {
+                return true;
+            }
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            if (name.equals("toString")) {
+                return "SimpleConnectionPool$Proxy[" + pooled.physical + "]";
+            }
+            if (closed) {
+                throw new SQLException("Connection is closed");
+            }
+
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,199 @@
+package hello.jdbc.connection;
+
+import hello.jdbc.metrics.StatementMetrics;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * 실행한 SQL별, 호출한 리포지토리 메서드별로 지연시간/호출 수/실패 수/반영된 row 수를 기록하는 DataSource 데코레이터
+ *
+ * MemberRepository를 구현하지 않는 V0~V3 리포지토리도 코드 변경 없이 측정할 수 있음
+ * (V1~V3는 생성자에 넘기고, V0는 DBConnectionUtil.useDataSource()로 지정)
+ * SQL은 리터럴과 IN (?, ?, ...) 목록을 정규화해서, 값이나 청크 크기만 다른 쿼리는 하나로 모아서 기록함
+ * 메서드별 기록은 statement를 만들 때마다 stack을 훑어야 하므로 trackCallers가 true인 경우에만 함
+ */
+public class StatementMetricsDataSource extends DelegatingDataSource {
+
+    private static final Set<String> EXECUTE_METHODS = Set.of(
+            "execute", "executeQuery", "executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern STRING_LITERAL = Pattern.compile("'([^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(\\.\\d+)?\\b");
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\?(\\s*,\\s*\\?)+");
+
+    private final StatementMetrics metrics;
+    private final boolean trackCallers;
+    // 같은 SQL 문자열을 매번 정규화하지 않도록 보관
+    private final Map<String, String> normalized = new ConcurrentHashMap<>();
+
+    public StatementMetricsDataSource(DataSource targetDataSource, StatementMetrics metrics) {
+        this(targetDataSource, metrics, false);
+    }
+
+    public StatementMetricsDataSource(DataSource targetDataSource, StatementMetrics metrics, boolean trackCallers) {
+        super(targetDataSource);
+        this.metrics = metrics;
+        this.trackCallers = trackCallers;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    public StatementMetrics getMetrics() {
+        return metrics;
+    }
+
+    static String normalize(String sql) {
+        String result = WHITESPACE.matcher(sql.trim()).replaceAll(" ");
+        result = STRING_LITERAL.matcher(result).replaceAll("?");
+        result = NUMBER_LITERAL.matcher(result).replaceAll("?");
+        result = PLACEHOLDER_LIST.matcher(result).replaceAll("?, ...");
+        return result.toLowerCase();
+    }
+
+    private Connection wrap(Connection con) {
+        return (Connection) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new ConnectionHandler(con));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+
+            Object result = StatementMetricsDataSource.invoke(target, method, args);
+
+            if (result instanceof Statement) {
+                // prepareStatement(sql, ...)는 SQL을 미리 알 수 있고, createStatement()는 execute(sql) 시점에 알 수 있음
+                String sql = name.startsWith("prepare") ? (String) args[0] : null;
+                // 프록시가 원래 statement와 같은 인터페이스를 구현해야 호출하는 쪽의 형변환이 실패하지 않음
+                Class<?> type = result instanceof CallableStatement ? CallableStatement.class
+                        : result instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+                return Proxy.newProxyInstance(
+                        getClass().getClassLoader(),
+                        new Class<?>[]{type},
+                        new StatementHandler((Connection) proxy, (Statement) result, sql, trackCallers ? CallerLocator.find() : null));
+            }
+            return result;
+        }
+    }
+
+    private class StatementHandler implements InvocationHandler {
+
+        private final Connection connection;
+        private final Statement target;
+        private final String sql;
+        private final String caller;
+
+        StatementHandler(Connection connection, Statement target, String sql, String caller) {
+            this.connection = connection;
+            this.target = target;
+            this.sql = sql;
+            this.caller = caller;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+
+            if (name.equals("getConnection")) {
+                return connection;
+            }
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            if (!EXECUTE_METHODS.contains(name)) {
+                return StatementMetricsDataSource.invoke(target, method, args);
+            }
+
+            String executedSql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql;
+            String key = executedSql != null ? normalized.computeIfAbsent(executedSql, StatementMetricsDataSource::normalize) : "batch";
+
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = StatementMetricsDataSource.invoke(target, method, args);
+            } catch (Throwable e) {
+                long elapsed = System.nanoTime() - start;
+                metrics.recordStatement(key, elapsed, 0, true);
+                if (caller != null) {
+                    metrics.recordOperation(caller, elapsed, 0, true);
+                }
+                throw e;
+            }
+
+            long elapsed = System.nanoTime() - start;
+            long rows = affectedRows(result);
+            metrics.recordStatement(key, elapsed, rows, false);
+            if (caller != null) {
+                metrics.recordOperation(caller, elapsed, rows, false);
+            }
+            return result;
+        }
+
+        // 조회(ResultSet)나 execute()의 boolean 결과는 반영된 row 수를 알 수 없으므로 0
+        private long affectedRows(Object result) {
+            if (result instanceof Integer || result instanceof Long) {
+                return ((Number) result).longValue();
+            }
+            if (result instanceof int[]) {
+                return Arrays.stream((int[]) result).filter(count -> count > 0).sum();
+            }
+            if (result instanceof long[]) {
+                return Arrays.stream((long[]) result).filter(count -> count > 0).sum();
+            }
+            return 0;
+        }
+    }
+
+}
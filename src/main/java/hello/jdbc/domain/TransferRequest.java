@@ -0,0 +1,12 @@
+package hello.jdbc.domain;
+
+import lombok.Data;
+
+@Data
+public class TransferRequest {
+
+    private final String senderId;
+    private final String receiverId;
+    private final int money;
+
+}
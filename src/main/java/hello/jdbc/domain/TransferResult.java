@@ -0,0 +1,24 @@
+package hello.jdbc.domain;
+
+import lombok.Data;
+
+/**
+ * 이체 요청 한 건의 처리 결과
+ */
+@Data
+public class TransferResult {
+
+    private final TransferRequest request;
+    private final boolean success;
+    // 실패한 경우 그 사유
+    private final String message;
+
+    public static TransferResult success(TransferRequest request) {
+        return new TransferResult(request, true, null);
+    }
+
+    public static TransferResult failure(TransferRequest request, String message) {
+        return new TransferResult(request, false, message);
+    }
+
+}
@@ -0,0 +1,91 @@
+package hello.jdbc.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 나노초 단위 소요 시간을 2의 거듭제곱 구간(bucket)으로 나누어 세는 히스토그램
+ *
+ * i번 bucket에는 [2^(i-1), 2^i) 범위의 값이 들어감 (0번 bucket은 0).
+ * 기록은 lock 없이 원자적 연산만 사용하므로 여러 스레드에서 동시에 record() 해도 됨.
+ * 백분위 값은 해당 bucket의 상한으로 계산하므로 최대 2배까지 크게 나올 수 있음
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        buckets.incrementAndGet(bucketIndex(value));
+        count.increment();
+        totalNanos.add(value);
+        maxNanos.accumulateAndGet(value, Math::max);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public long getMeanNanos() {
+        long countValue = count.sum();
+        return countValue == 0 ? 0 : totalNanos.sum() / countValue;
+    }
+
+    /**
+     * percentile: 0.0 ~ 1.0 (예: 0.99)
+     */
+    public long getPercentileNanos(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max((long) Math.ceil(percentile * total), 1);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount() +
+                ", mean=" + micros(getMeanNanos()) + "us" +
+                ", p50=" + micros(getPercentileNanos(0.5)) + "us" +
+                ", p99=" + micros(getPercentileNanos(0.99)) + "us" +
+                ", max=" + micros(getMaxNanos()) + "us";
+    }
+
+    private static int bucketIndex(long value) {
+        return Math.min(64 - Long.numberOfLeadingZeros(value), BUCKETS - 1);
+    }
+
+    private static long upperBound(int index) {
+        return index >= 63 ? Long.MAX_VALUE : (1L << index) - 1;
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+}
@@ -0,0 +1,99 @@
+package hello.jdbc.metrics;
+
+import java.beans.ConstructorProperties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 하나의 작업(리포지토리 메서드 또는 SQL)에 대한 호출 수, 실패 수, 반영된 row 수, 지연시간
+ */
+public class OperationStats {
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+
+    public void record(long nanos, long affectedRows, boolean failed) {
+        latency.record(nanos);
+        calls.increment();
+        rows.add(affectedRows);
+        if (failed) {
+            errors.increment();
+        }
+    }
+
+    public LatencyHistogram getLatencyHistogram() {
+        return latency;
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(calls.sum(), errors.sum(), rows.sum(),
+                micros(latency.getMeanNanos()), micros(latency.getPercentileNanos(0.5)),
+                micros(latency.getPercentileNanos(0.99)), micros(latency.getMaxNanos()));
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    /**
+     * 조회 시점의 값 (JMX로 노출되므로 getter만 가진 불변 객체)
+     */
+    public static class Snapshot {
+
+        private final long calls;
+        private final long errors;
+        private final long rows;
+        private final long meanMicros;
+        private final long p50Micros;
+        private final long p99Micros;
+        private final long maxMicros;
+
+        @ConstructorProperties({"calls", "errors", "rows", "meanMicros", "p50Micros", "p99Micros", "maxMicros"})
+        public Snapshot(long calls, long errors, long rows, long meanMicros, long p50Micros, long p99Micros, long maxMicros) {
+            this.calls = calls;
+            this.errors = errors;
+            this.rows = rows;
+            this.meanMicros = meanMicros;
+            this.p50Micros = p50Micros;
+            this.p99Micros = p99Micros;
+            this.maxMicros = maxMicros;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getMeanMicros() {
+            return meanMicros;
+        }
+
+        public long getP50Micros() {
+            return p50Micros;
+        }
+
+        public long getP99Micros() {
+            return p99Micros;
+        }
+
+        public long getMaxMicros() {
+            return maxMicros;
+        }
+
+        @Override
+        public String toString() {
+            return "calls=" + calls + ", errors=" + errors + ", rows=" + rows
+                    + ", mean=" + meanMicros + "us, p50=" + p50Micros + "us, p99=" + p99Micros + "us, max=" + maxMicros + "us";
+        }
+    }
+
+}
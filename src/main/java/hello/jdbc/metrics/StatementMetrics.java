@@ -0,0 +1,79 @@
+package hello.jdbc.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 리포지토리 작업별, SQL별 OperationStats 모음
+ * MeteredMemberRepository, StatementMetricsDataSource가 기록하고, snapshot 메서드나 JMX로 조회
+ */
+@Slf4j
+public class StatementMetrics implements StatementMetricsMXBean {
+
+    private final Map<String, OperationStats> operations = new ConcurrentHashMap<>();
+    private final Map<String, OperationStats> statements = new ConcurrentHashMap<>();
+
+    public void recordOperation(String operation, long nanos, long affectedRows, boolean failed) {
+        operations.computeIfAbsent(operation, key -> new OperationStats()).record(nanos, affectedRows, failed);
+    }
+
+    public void recordStatement(String sql, long nanos, long affectedRows, boolean failed) {
+        statements.computeIfAbsent(sql, key -> new OperationStats()).record(nanos, affectedRows, failed);
+    }
+
+    @Override
+    public Map<String, OperationStats.Snapshot> getOperations() {
+        return snapshot(operations);
+    }
+
+    @Override
+    public Map<String, OperationStats.Snapshot> getStatements() {
+        return snapshot(statements);
+    }
+
+    @Override
+    public void reset() {
+        operations.clear();
+        statements.clear();
+    }
+
+    /**
+     * 플랫폼 MBeanServer에 hello.jdbc:type=StatementMetrics,name={name} 으로 등록
+     */
+    public ObjectName registerMBean(String name) {
+        try {
+            ObjectName objectName = new ObjectName("hello.jdbc", "type", "StatementMetrics");
+            objectName = ObjectName.getInstance(objectName + ",name=" + ObjectName.quote(name));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to register StatementMetrics MBean: " + name, e);
+        }
+    }
+
+    public void unregisterMBean(ObjectName objectName) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            log.warn("Failed to unregister {}", objectName, e);
+        }
+    }
+
+    private static Map<String, OperationStats.Snapshot> snapshot(Map<String, OperationStats> stats) {
+        Map<String, OperationStats.Snapshot> snapshot = new TreeMap<>();
+        stats.forEach((key, value) -> snapshot.put(key, value.snapshot()));
+        return snapshot;
+    }
+
+}
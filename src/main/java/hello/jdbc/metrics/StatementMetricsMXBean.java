@@ -0,0 +1,18 @@
+package hello.jdbc.metrics;
+
+import java.util.Map;
+
+/**
+ * StatementMetrics를 JMX(jconsole 등)로 조회하기 위한 인터페이스
+ */
+public interface StatementMetricsMXBean {
+
+    // key: 리포지토리 작업 (save, findById, ... 또는 MemberRepositoryV1.save)
+    Map<String, OperationStats.Snapshot> getOperations();
+
+    // key: 정규화된 SQL
+    Map<String, OperationStats.Snapshot> getStatements();
+
+    void reset();
+
+}
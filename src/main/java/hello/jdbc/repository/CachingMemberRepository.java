@@ -0,0 +1,398 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 읽기 캐시를 적용한 MemberRepository 데코레이터 (read-through)
+ *
+ * - 최대 maximumSize개까지 보관하고, 넘치면 가장 오래전에 조회된 회원부터 제거 (LRU)
+ * - ttl이 지정되면 캐시된 지 ttl이 지난 회원은 다시 DB에서 조회
+ * - 쓰기 작업 시 해당 회원을 캐시에서 제거
+ *
+ * 트랜잭션 안에서 수정한 회원은 커밋되기 전까지 캐시에 넣지도, 캐시에서 꺼내지도 않고
+ * 트랜잭션이 끝나면(커밋/롤백 모두) 다시 한 번 제거함. 따라서 롤백된 값이 캐시에 남는 일이 없음
+ */
+@Slf4j
+public class CachingMemberRepository implements MemberRepository {
+
+    private final MemberRepository delegate;
+    private final int maximumSize;
+    // 0이면 만료 없음
+    private final long ttlNanos;
+
+    // accessOrder = true -> 조회할 때마다 맨 뒤로 이동하므로 맨 앞이 가장 오래전에 사용된 entry
+    private final LinkedHashMap<String, CacheEntry> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+            if (size() > maximumSize) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /*
+    회원별로 마지막으로 캐시에서 제거된 시점(invalidationSequence)
+    DB에서 조회하는 사이에 다른 스레드가 그 회원을 수정했다면, 조회 시작 이후의 값이 기록되어 있으므로 조회해온 (오래된) 값을 캐시에 넣지 않음
+    다른 회원의 수정은 영향을 주지 않음. 진행 중인 조회가 있을 때만 기록하고, 진행 중인 조회가 없어지면 비움
+    아래 세 필드는 모두 cache의 lock으로 보호함
+     */
+    private final Map<String, Long> invalidatedAt = new HashMap<>();
+    private long invalidationSequence;
+    private int loadsInProgress;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+
+    public CachingMemberRepository(MemberRepository delegate, int maximumSize) {
+        this(delegate, maximumSize, Duration.ZERO);
+    }
+
+    public CachingMemberRepository(MemberRepository delegate, int maximumSize, Duration ttl) {
+        this.delegate = delegate;
+        this.maximumSize = maximumSize;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    @Override
+    public Member save(Member member) {
+        try {
+            return delegate.save(member);
+        } finally {
+            invalidate(member.getMemberId());
+        }
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        boolean dirty = isDirty(memberId);
+
+        if (!dirty) {
+            Member cached = getIfPresent(memberId);
+            if (cached != null) {
+                hits.increment();
+                return copy(cached);
+            }
+        }
+        misses.increment();
+
+        long loadStartedAt = beginLoad();
+        Member member;
+        try {
+            long start = System.nanoTime();
+            member = delegate.findById(memberId);
+            recordLoad(start);
+
+            if (!dirty) {
+                putIfNotInvalidated(member, loadStartedAt);
+            }
+        } finally {
+            endLoad();
+        }
+        return copy(member);
+    }
+
+    // lock을 잡아야 하므로 항상 DB에서 조회
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+        return delegate.findByIdForUpdate(memberId);
+    }
+
+    @Override
+    public Map<String, Member> findAllByIdsForUpdate(Collection<String> ids) {
+        return delegate.findAllByIdsForUpdate(ids);
+    }
+
+    @Override
+    public void update(String memberId, int money) {
+        try {
+            delegate.update(memberId, money);
+        } finally {
+            invalidate(memberId);
+        }
+    }
+
+    @Override
+    public void update(String memberId, int money, long expectedVersion) {
+        try {
+            delegate.update(memberId, money, expectedVersion);
+        } finally {
+            invalidate(memberId);
+        }
+    }
+
+    @Override
+    public void delete(String memberId) {
+        try {
+            delegate.delete(memberId);
+        } finally {
+            invalidate(memberId);
+        }
+    }
+
+    @Override
+    public int addMoney(String memberId, int delta) {
+        try {
+            return delegate.addMoney(memberId, delta);
+        } finally {
+            invalidate(memberId);
+        }
+    }
+
+    @Override
+    public int debitIfSufficient(String memberId, int amount) {
+        try {
+            return delegate.debitIfSufficient(memberId, amount);
+        } finally {
+            invalidate(memberId);
+        }
+    }
+
+    @Override
+    public int[] addMoneyAll(Map<String, Integer> deltas) {
+        try {
+            return delegate.addMoneyAll(deltas);
+        } finally {
+            deltas.keySet().forEach(this::invalidate);
+        }
+    }
+
+    @Override
+    public void saveAll(Collection<Member> members) {
+        try {
+            delegate.saveAll(members);
+        } finally {
+            members.forEach(member -> invalidate(member.getMemberId()));
+        }
+    }
+
+    @Override
+    public void updateAll(Map<String, Integer> moneyByMemberId) {
+        try {
+            delegate.updateAll(moneyByMemberId);
+        } finally {
+            moneyByMemberId.keySet().forEach(this::invalidate);
+        }
+    }
+
+    @Override
+    public Map<String, Member> findAllByIds(Collection<String> ids) {
+        Map<String, Member> members = new HashMap<>();
+        List<String> missingIds = new ArrayList<>();
+
+        for (String memberId : new HashSet<>(ids)) {
+            Member cached = isDirty(memberId) ? null : getIfPresent(memberId);
+            if (cached != null) {
+                hits.increment();
+                members.put(memberId, copy(cached));
+            } else {
+                misses.increment();
+                missingIds.add(memberId);
+            }
+        }
+
+        if (!missingIds.isEmpty()) {
+            long loadStartedAt = beginLoad();
+            try {
+                long start = System.nanoTime();
+                Map<String, Member> loaded = delegate.findAllByIds(missingIds);
+                recordLoad(start);
+
+                for (Member member : loaded.values()) {
+                    if (!isDirty(member.getMemberId())) {
+                        putIfNotInvalidated(member, loadStartedAt);
+                    }
+                    members.put(member.getMemberId(), copy(member));
+                }
+            } finally {
+                endLoad();
+            }
+        }
+        return members;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long requestCount = hitCount + misses.sum();
+        return requestCount == 0 ? 0.0 : (double) hitCount / requestCount;
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    public long getAverageLoadNanos() {
+        long loadCount = loads.sum();
+        return loadCount == 0 ? 0 : loadNanos.sum() / loadCount;
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private Member getIfPresent(String memberId) {
+        synchronized (cache) {
+            CacheEntry entry = cache.get(memberId);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.isExpired(System.nanoTime())) {
+                cache.remove(memberId);
+                evictions.increment();
+                return null;
+            }
+            return entry.member;
+        }
+    }
+
+    // DB 조회 시작. 반환한 값보다 나중에 제거된 회원은 이번 조회 결과를 캐시에 넣지 않음
+    private long beginLoad() {
+        synchronized (cache) {
+            loadsInProgress++;
+            return invalidationSequence;
+        }
+    }
+
+    private void endLoad() {
+        synchronized (cache) {
+            if (--loadsInProgress == 0) {
+                invalidatedAt.clear();
+            }
+        }
+    }
+
+    private void putIfNotInvalidated(Member member, long loadStartedAt) {
+        long expiresAt = ttlNanos > 0 ? System.nanoTime() + ttlNanos : 0;
+        synchronized (cache) {
+            Long invalidated = invalidatedAt.get(member.getMemberId());
+            if (invalidated == null || invalidated <= loadStartedAt) {
+                cache.put(member.getMemberId(), new CacheEntry(copy(member), expiresAt));
+            }
+        }
+    }
+
+    private void invalidate(String memberId) {
+        synchronized (cache) {
+            evict(memberId);
+        }
+        markDirty(memberId);
+    }
+
+    // cache의 lock을 잡은 상태에서 호출
+    private void evict(String memberId) {
+        cache.remove(memberId);
+        if (loadsInProgress > 0) {
+            invalidatedAt.put(memberId, ++invalidationSequence);
+        }
+    }
+
+    private void recordLoad(long start) {
+        loads.increment();
+        loadNanos.add(System.nanoTime() - start);
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean isDirty(String memberId) {
+        Set<String> dirtyIds = (Set<String>) TransactionSynchronizationManager.getResource(this);
+        return dirtyIds != null && dirtyIds.contains(memberId);
+    }
+
+    /**
+     * 현재 트랜잭션에서 수정한 회원을 기록해두고, 트랜잭션 종료 시점에 캐시에서 한 번 더 제거
+     */
+    @SuppressWarnings("unchecked")
+    private void markDirty(String memberId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+
+        Set<String> dirtyIds = (Set<String>) TransactionSynchronizationManager.getResource(this);
+        if (dirtyIds == null) {
+            dirtyIds = new HashSet<>();
+            TransactionSynchronizationManager.bindResource(this, dirtyIds);
+            TransactionSynchronizationManager.registerSynchronization(new DirtyIdsSynchronization(dirtyIds));
+        }
+        dirtyIds.add(memberId);
+    }
+
+    private class DirtyIdsSynchronization implements TransactionSynchronization {
+
+        private final Set<String> dirtyIds;
+
+        DirtyIdsSynchronization(Set<String> dirtyIds) {
+            this.dirtyIds = dirtyIds;
+        }
+
+        // REQUIRES_NEW 등으로 트랜잭션이 잠시 중단되는 동안에는 바인딩을 풀어둠
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResourceIfPossible(CachingMemberRepository.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(CachingMemberRepository.this, dirtyIds);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(CachingMemberRepository.this);
+            synchronized (cache) {
+                dirtyIds.forEach(CachingMemberRepository.this::evict);
+            }
+        }
+    }
+
+    // Member는 변경 가능한 객체이므로 캐시에 들어있는 객체가 밖에서 수정되지 않도록 복사해서 주고받음
+    private static Member copy(Member member) {
+        return new Member(member.getMemberId(), member.getMoney(), member.getVersion());
+    }
+
+    private static class CacheEntry {
+
+        private final Member member;
+        private final long expiresAt;
+
+        CacheEntry(Member member, long expiresAt) {
+            this.member = member;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return expiresAt != 0 && now - expiresAt >= 0;
+        }
+    }
+
+}
@@ -0,0 +1,274 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.transaction.SavepointSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 트랜잭션 범위의 1차 캐시(identity map)를 적용한 MemberRepository 데코레이터
+ *
+ * 트랜잭션 안에서 한 번 조회한 회원은 같은 트랜잭션이 끝날 때까지 보관해두고, 다시 findById() 하면 DB에 가지 않고
+ * 보관해둔 같은 Member 객체를 반환함. 트랜잭션이 끝나면(커밋/롤백 모두) 비우므로 다른 트랜잭션과는 공유하지 않음
+ * 트랜잭션(동기화)이 없는 호출은 그대로 delegate에 위임
+ *
+ * - update()는 반영된 값으로 보관 중인 회원을 갱신하고, 그 외의 쓰기 작업은 DB에서 값이 계산되므로 보관 중인 회원을 제거
+ * - 반환한 Member 객체를 수정해도 DB에는 반영되지 않으며, 같은 트랜잭션의 이후 조회 결과에는 보임
+ * - 한 번 읽은 회원은 트랜잭션 격리 수준과 관계없이 다시 읽어도 같은 값이 보임 (다른 트랜잭션의 커밋을 보려면 findByIdForUpdate 사용)
+ * - 세이브포인트로 되돌리면 보관 중인 회원을 모두 비움. 세이브포인트는 Savepoints를 통해 만들고 되돌려야 함
+ *   (TransactionStatus.rollbackToSavepoint()를 직접 호출하면 되돌린 쓰기 결과가 계속 보임)
+ */
+public class IdentityMapMemberRepository implements MemberRepository {
+
+    private final MemberRepository delegate;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public IdentityMapMemberRepository(MemberRepository delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Member save(Member member) {
+        try {
+            return delegate.save(member);
+        } finally {
+            evict(member.getMemberId());
+        }
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        Map<String, Member> identityMap = identityMap();
+        if (identityMap == null) {
+            return delegate.findById(memberId);
+        }
+
+        Member loaded = identityMap.get(memberId);
+        if (loaded != null) {
+            hits.increment();
+            return loaded;
+        }
+        misses.increment();
+
+        Member member = delegate.findById(memberId);
+        identityMap.put(memberId, member);
+        return member;
+    }
+
+    // lock을 잡아야 하므로 항상 DB에서 조회하고, 조회한 최신 값으로 보관
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+        Member member = delegate.findByIdForUpdate(memberId);
+        Map<String, Member> identityMap = identityMap();
+        if (identityMap != null) {
+            identityMap.put(memberId, member);
+        }
+        return member;
+    }
+
+    @Override
+    public Map<String, Member> findAllByIdsForUpdate(Collection<String> ids) {
+        Map<String, Member> members = delegate.findAllByIdsForUpdate(ids);
+        Map<String, Member> identityMap = identityMap();
+        if (identityMap != null) {
+            identityMap.putAll(members);
+        }
+        return members;
+    }
+
+    @Override
+    public void update(String memberId, int money) {
+        try {
+            delegate.update(memberId, money);
+        } catch (RuntimeException e) {
+            evict(memberId);
+            throw e;
+        }
+        // 수정 쿼리는 version을 1 증가시킴
+        replace(memberId, money, 1);
+    }
+
+    @Override
+    public void update(String memberId, int money, long expectedVersion) {
+        try {
+            delegate.update(memberId, money, expectedVersion);
+        } catch (RuntimeException e) {
+            evict(memberId);
+            throw e;
+        }
+        Map<String, Member> identityMap = identityMap();
+        if (identityMap != null) {
+            identityMap.put(memberId, new Member(memberId, money, expectedVersion + 1));
+        }
+    }
+
+    @Override
+    public void delete(String memberId) {
+        try {
+            delegate.delete(memberId);
+        } finally {
+            evict(memberId);
+        }
+    }
+
+    @Override
+    public int addMoney(String memberId, int delta) {
+        try {
+            return delegate.addMoney(memberId, delta);
+        } finally {
+            evict(memberId);
+        }
+    }
+
+    @Override
+    public int debitIfSufficient(String memberId, int amount) {
+        try {
+            return delegate.debitIfSufficient(memberId, amount);
+        } finally {
+            evict(memberId);
+        }
+    }
+
+    @Override
+    public int[] addMoneyAll(Map<String, Integer> deltas) {
+        try {
+            return delegate.addMoneyAll(deltas);
+        } finally {
+            deltas.keySet().forEach(this::evict);
+        }
+    }
+
+    @Override
+    public void saveAll(Collection<Member> members) {
+        try {
+            delegate.saveAll(members);
+        } finally {
+            members.forEach(member -> evict(member.getMemberId()));
+        }
+    }
+
+    @Override
+    public void updateAll(Map<String, Integer> moneyByMemberId) {
+        try {
+            delegate.updateAll(moneyByMemberId);
+        } catch (RuntimeException e) {
+            moneyByMemberId.keySet().forEach(this::evict);
+            throw e;
+        }
+        moneyByMemberId.forEach((memberId, money) -> replace(memberId, money, 1));
+    }
+
+    @Override
+    public Map<String, Member> findAllByIds(Collection<String> ids) {
+        Map<String, Member> identityMap = identityMap();
+        if (identityMap == null) {
+            return delegate.findAllByIds(ids);
+        }
+
+        Map<String, Member> members = new HashMap<>();
+        List<String> missingIds = new ArrayList<>();
+        for (String memberId : new LinkedHashSet<>(ids)) {
+            Member loaded = identityMap.get(memberId);
+            if (loaded != null) {
+                hits.increment();
+                members.put(memberId, loaded);
+            } else {
+                misses.increment();
+                missingIds.add(memberId);
+            }
+        }
+
+        if (!missingIds.isEmpty()) {
+            Map<String, Member> loaded = delegate.findAllByIds(missingIds);
+            identityMap.putAll(loaded);
+            members.putAll(loaded);
+        }
+        return members;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * 현재 트랜잭션의 identity map. 트랜잭션 동기화가 활성화되어 있지 않으면 null
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Member> identityMap() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+
+        Map<String, Member> identityMap = (Map<String, Member>) TransactionSynchronizationManager.getResource(this);
+        if (identityMap == null) {
+            identityMap = new HashMap<>();
+            TransactionSynchronizationManager.bindResource(this, identityMap);
+            TransactionSynchronizationManager.registerSynchronization(new IdentityMapSynchronization(identityMap));
+        }
+        return identityMap;
+    }
+
+    private void replace(String memberId, int money, long versionIncrement) {
+        Map<String, Member> identityMap = identityMap();
+        if (identityMap == null) {
+            return;
+        }
+        Member loaded = identityMap.get(memberId);
+        if (loaded != null) {
+            identityMap.put(memberId, new Member(memberId, money, loaded.getVersion() + versionIncrement));
+        }
+    }
+
+    private void evict(String memberId) {
+        Map<String, Member> identityMap = identityMap();
+        if (identityMap != null) {
+            identityMap.remove(memberId);
+        }
+    }
+
+    private class IdentityMapSynchronization implements SavepointSynchronization {
+
+        private final Map<String, Member> identityMap;
+
+        IdentityMapSynchronization(Map<String, Member> identityMap) {
+            this.identityMap = identityMap;
+        }
+
+        // REQUIRES_NEW 등으로 트랜잭션이 잠시 중단되는 동안에는 바인딩을 풀어둠 (새 트랜잭션은 자신의 identity map을 사용)
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResourceIfPossible(IdentityMapMemberRepository.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(IdentityMapMemberRepository.this, identityMap);
+        }
+
+        // 세이브포인트 이후에 조회/수정한 값이 DB에서는 되돌려졌으므로, 어느 회원이 바뀌었는지와 관계없이 모두 비움
+        @Override
+        public void afterRollbackToSavepoint() {
+            identityMap.clear();
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(IdentityMapMemberRepository.this);
+            identityMap.clear();
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+package hello.jdbc.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * IN (...) 조회를 여러 청크로 나누기 위한 도우미
+ * 청크 크기를 2의 거듭제곱(최대 MAX_CHUNK_SIZE)으로 맞추고 빈 자리는 청크의 마지막 id로 채움.
+ * 이렇게 하면 만들어지는 SQL의 종류가 몇 가지로 제한되기 때문에, 청크 크기별로 PreparedStatement(및 DB의 쿼리 캐시)를 재사용할 수 있음
+ */
+final class InClause {
+
+    static final int MAX_CHUNK_SIZE = 128;
+
+    private InClause() {
+    }
+
+    /**
+     * 중복을 제거한 id들을 최대 MAX_CHUNK_SIZE 크기의 청크로 나눔. 각 청크의 크기는 항상 2의 거듭제곱
+     */
+    static List<List<String>> chunks(Collection<String> ids) {
+        List<String> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        List<List<String>> chunks = new ArrayList<>();
+
+        for (int from = 0; from < distinctIds.size(); from += MAX_CHUNK_SIZE) {
+            int to = Math.min(from + MAX_CHUNK_SIZE, distinctIds.size());
+            List<String> chunk = new ArrayList<>(distinctIds.subList(from, to));
+
+            String last = chunk.get(chunk.size() - 1);
+            int paddedSize = paddedSize(chunk.size());
+            while (chunk.size() < paddedSize) {
+                chunk.add(last);
+            }
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    static String selectSql(int size) {
+        return "select * from member where member_id in (" + placeholders(size) + ")";
+    }
+
+    // 항상 memberId 순서로 lock을 잡도록 정렬
+    static String selectForUpdateSql(int size) {
+        return selectSql(size) + " order by member_id for update";
+    }
+
+    static String placeholders(int size) {
+        return String.join(", ", Collections.nCopies(size, "?"));
+    }
+
+    static List<String> sortedDistinct(Collection<String> ids) {
+        return new ArrayList<>(new TreeSet<>(ids));
+    }
+
+    private static int paddedSize(int size) {
+        int paddedSize = Integer.highestOneBit(size);
+        return paddedSize == size ? size : Math.min(paddedSize << 1, MAX_CHUNK_SIZE);
+    }
+
+}
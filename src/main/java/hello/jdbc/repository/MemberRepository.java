@@ -2,14 +2,51 @@ package hello.jdbc.repository;
 
 import hello.jdbc.domain.Member;
 
+import java.util.Collection;
+import java.util.Map;
+
 public interface MemberRepository {
 
     Member save(Member member);
 
     Member findById(String memberId);
 
+    // select ... for update 로 조회하면서 트랜잭션이 끝날 때까지 해당 row에 lock을 걸어둠
+    Member findByIdForUpdate(String memberId);
+
+    // 여러 row를 memberId 순서대로 쿼리 하나로 lock 걸면서 조회. 존재하지 않는 memberId는 결과 Map에 포함되지 않음
+    Map<String, Member> findAllByIdsForUpdate(Collection<String> ids);
+
     void update(String memberId, int money);
 
+    /*
+    낙관적 락: 조회했을 때의 version(expectedVersion)이 그대로인 경우에만 수정하고 version을 1 증가시킴
+    그 사이 다른 트랜잭션이 먼저 수정했다면 OptimisticLockingFailureException 발생
+    회원이 존재하지 않으면 findById와 같은 예외 발생 (재시도 대상이 아닌 NoSuchElementException, EmptyResultDataAccessException)
+     */
+    void update(String memberId, int money, long expectedVersion);
+
     void delete(String memberId);
 
+    // money = money + delta 를 하나의 쿼리로 수행. 반영된 row 수를 반환 (0이면 해당 회원 없음)
+    int addMoney(String memberId, int delta);
+
+    // 잔고가 amount 이상인 경우에만 차감. 반영된 row 수를 반환 (0이면 잔고 부족 또는 해당 회원 없음)
+    int debitIfSufficient(String memberId, int amount);
+
+    /*
+    key: memberId, value: 더하거나 뺄 금액 (delta)
+    반영 후 잔고가 음수가 되는 경우에는 반영하지 않음. 회원별로 반영된 row 수를 Map의 순서대로 반환
+     */
+    int[] addMoneyAll(Map<String, Integer> deltas);
+
+    // 여러 건을 JDBC 배치로 묶어서 저장 (batchSize 단위로 DB에 전송)
+    void saveAll(Collection<Member> members);
+
+    // key: memberId, value: 변경할 money
+    void updateAll(Map<String, Integer> moneyByMemberId);
+
+    // 여러 회원을 IN (...) 쿼리로 한 번에 조회. 존재하지 않는 memberId는 결과 Map에 포함되지 않음
+    Map<String, Member> findAllByIds(Collection<String> ids);
+
 }
@@ -52,7 +52,17 @@ public class MemberRepositoryV3 {
 
     public Member findById(String memberId) throws SQLException {
         String sql = "select * from member where member_id = ?";
+        return findOne(sql, memberId);
+    }
+
+    public Member findByIdForUpdate(String memberId) throws SQLException {
+        // 트랜잭션이 끝날 때까지 해당 row에 lock을 걸어둠
+        String sql = "select * from member where member_id = ? for update";
+        return findOne(sql, memberId);
+    }
 
+    // memberId 하나를 파라미터로 받는 조회 쿼리(findById, findByIdForUpdate)를 실행해서 Member로 변환
+    private Member findOne(String sql, String memberId) throws SQLException {
         Connection con = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
@@ -1,12 +1,19 @@
 package hello.jdbc.repository;
 
 import hello.jdbc.domain.Member;
+import hello.jdbc.domain.TransferRequest;
 import hello.jdbc.repository.exception.MyDbException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
 
 import javax.sql.DataSource;
 import java.sql.*;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 import static org.springframework.jdbc.support.JdbcUtils.closeResultSet;
@@ -16,12 +23,24 @@ import static org.springframework.jdbc.support.JdbcUtils.closeStatement;
  * TransactionManager
  */
 @Slf4j
-public class MemberRepositoryV4_1 implements MemberRepository {
+public class MemberRepositoryV4_1 implements MemberRepository, TransferRepository {
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
 
     private final DataSource dataSource;
+    // saveAll, updateAll 시에 한 번의 executeBatch()로 전송할 row 개수
+    private final int batchSize;
 
     public MemberRepositoryV4_1(DataSource dataSource) {
+        this(dataSource, DEFAULT_BATCH_SIZE);
+    }
+
+    public MemberRepositoryV4_1(DataSource dataSource, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
         this.dataSource = dataSource;
+        this.batchSize = batchSize;
     }
 
     @Override
@@ -76,6 +95,7 @@ public class MemberRepositoryV4_1 implements MemberRepository {
                 Member member = new Member();
                 member.setMemberId(rs.getString("member_id"));
                 member.setMoney(rs.getInt("money"));
+                member.setVersion(rs.getLong("version"));
 
                 log.info("Found member={}", member);
                 return member;
@@ -89,9 +109,134 @@ public class MemberRepositoryV4_1 implements MemberRepository {
         }
     }
 
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+        // 트랜잭션이 끝날 때까지 다른 트랜잭션이 이 row를 수정하거나 lock을 걸 수 없음
+        String sql = "select * from member where member_id = ? for update";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            con = DataSourceUtils.getConnection(dataSource);
+            pstmt = con.prepareStatement(sql);
+
+            pstmt.setString(1, memberId);
+
+            rs = pstmt.executeQuery();
+
+            if (rs.next()) {
+                Member member = new Member();
+                member.setMemberId(rs.getString("member_id"));
+                member.setMoney(rs.getInt("money"));
+                member.setVersion(rs.getLong("version"));
+
+                log.info("Found member for update={}", member);
+                return member;
+            } else {
+                throw new NoSuchElementException("Member with member_id " + memberId + " does not exist.");
+            }
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(con, pstmt, rs);
+        }
+    }
+
+    @Override
+    public Map<String, Member> findAllByIdsForUpdate(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return new HashMap<>();
+        }
+
+        List<String> sortedIds = InClause.sortedDistinct(ids);
+        String sql = InClause.selectForUpdateSql(sortedIds.size());
+
+        Map<String, Member> members = new HashMap<>();
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            con = DataSourceUtils.getConnection(dataSource);
+            pstmt = con.prepareStatement(sql);
+
+            for (int i = 0; i < sortedIds.size(); i++) {
+                pstmt.setString(i + 1, sortedIds.get(i));
+            }
+
+            rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                Member member = new Member();
+                member.setMemberId(rs.getString("member_id"));
+                member.setMoney(rs.getInt("money"));
+                member.setVersion(rs.getLong("version"));
+                members.put(member.getMemberId(), member);
+            }
+
+            log.info("Found members for update={}", members.size());
+            return members;
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(con, pstmt, rs);
+        }
+    }
+
+    @Override
+    public Map<String, Member> findAllByIds(Collection<String> ids) {
+        Map<String, Member> members = new HashMap<>();
+        // 청크 크기별로 PreparedStatement를 한 번만 준비해두고, 같은 크기의 청크에서 재사용
+        Map<Integer, PreparedStatement> pstmts = new HashMap<>();
+        String sql = null;
+
+        Connection con = null;
+
+        try {
+            con = DataSourceUtils.getConnection(dataSource);
+
+            for (List<String> chunk : InClause.chunks(ids)) {
+                PreparedStatement pstmt = pstmts.get(chunk.size());
+                if (pstmt == null) {
+                    sql = InClause.selectSql(chunk.size());
+                    pstmt = con.prepareStatement(sql);
+                    pstmts.put(chunk.size(), pstmt);
+                }
+
+                for (int i = 0; i < chunk.size(); i++) {
+                    pstmt.setString(i + 1, chunk.get(i));
+                }
+
+                ResultSet rs = pstmt.executeQuery();
+                try {
+                    while (rs.next()) {
+                        Member member = new Member();
+                        member.setMemberId(rs.getString("member_id"));
+                        member.setMoney(rs.getInt("money"));
+                        member.setVersion(rs.getLong("version"));
+                        members.put(member.getMemberId(), member);
+                    }
+                } finally {
+                    closeResultSet(rs);
+                }
+            }
+
+            log.info("Found members={}", members.size());
+            return members;
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            pstmts.values().forEach(JdbcUtils::closeStatement);
+            close(con, null, null);
+        }
+    }
+
     @Override
     public void update(String memberId, int money) {
-        String sql = "update member set money=? where member_id=?";
+        String sql = "update member set money=?, version=version+1 where member_id=?";
 
         Connection con = null;
         PreparedStatement pstmt = null;
@@ -111,6 +256,174 @@ public class MemberRepositoryV4_1 implements MemberRepository {
         }
     }
 
+    @Override
+    public void update(String memberId, int money, long expectedVersion) {
+        String sql = "update member set money=?, version=version+1 where member_id=? and version=?";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = DataSourceUtils.getConnection(dataSource);
+            pstmt = con.prepareStatement(sql);
+
+            pstmt.setInt(1, money);
+            pstmt.setString(2, memberId);
+            pstmt.setLong(3, expectedVersion);
+
+            int resultSize = pstmt.executeUpdate();
+            if (resultSize == 0) {
+                // 회원이 아예 없는 경우는 재시도해도 성공할 수 없으므로 version 충돌과 구분함
+                if (!existsById(con, memberId)) {
+                    throw new NoSuchElementException("Member with member_id " + memberId + " does not exist.");
+                }
+                throw new OptimisticLockingFailureException("version conflict: memberId=" + memberId + ", expectedVersion=" + expectedVersion);
+            }
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(con, pstmt, null);
+        }
+    }
+
+    // version 충돌 여부를 확인하는 중이므로 커넥션을 하나 더 빌리지 않고 update에 사용한 커넥션으로 조회
+    private boolean existsById(Connection con, String memberId) throws SQLException {
+        String sql = "select 1 from member where member_id = ?";
+
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            pstmt = con.prepareStatement(sql);
+
+            pstmt.setString(1, memberId);
+
+            rs = pstmt.executeQuery();
+            return rs.next();
+        } finally {
+            closeResultSet(rs);
+            closeStatement(pstmt);
+        }
+    }
+
+    @Override
+    public int addMoney(String memberId, int delta) {
+        // 조회 후 계산한 값으로 덮어쓰지 않고 DB에서 바로 더하기 때문에, 한 번의 왕복으로 끝나고 동시 수정 시 갱신 손실도 없음
+        String sql = "update member set money=money+?, version=version+1 where member_id=?";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = DataSourceUtils.getConnection(dataSource);
+            pstmt = con.prepareStatement(sql);
+
+            pstmt.setInt(1, delta);
+            pstmt.setString(2, memberId);
+
+            return pstmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(con, pstmt, null);
+        }
+    }
+
+    @Override
+    public int debitIfSufficient(String memberId, int amount) {
+        String sql = "update member set money=money-?, version=version+1 where member_id=? and money>=?";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = DataSourceUtils.getConnection(dataSource);
+            pstmt = con.prepareStatement(sql);
+
+            pstmt.setInt(1, amount);
+            pstmt.setString(2, memberId);
+            pstmt.setInt(3, amount);
+
+            return pstmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(con, pstmt, null);
+        }
+    }
+
+    @Override
+    public int[] addMoneyAll(Map<String, Integer> deltas) {
+        String sql = "update member set money=money+?, version=version+1 where member_id=? and money+?>=0";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = DataSourceUtils.getConnection(dataSource);
+            pstmt = con.prepareStatement(sql);
+
+            for (Map.Entry<String, Integer> entry : deltas.entrySet()) {
+                pstmt.setInt(1, entry.getValue());
+                pstmt.setString(2, entry.getKey());
+                pstmt.setInt(3, entry.getValue());
+                pstmt.addBatch();
+            }
+
+            return pstmt.executeBatch();
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(con, pstmt, null);
+        }
+    }
+
+    @Override
+    public int transfer(String senderId, String receiverId, int money) {
+        String sql = TransferSql.TRANSFER;
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = DataSourceUtils.getConnection(dataSource);
+            pstmt = con.prepareStatement(sql);
+
+            TransferSql.setParameters(pstmt, senderId, receiverId, money);
+
+            return pstmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(con, pstmt, null);
+        }
+    }
+
+    @Override
+    public int[] transferAll(List<TransferRequest> requests) {
+        String sql = TransferSql.TRANSFER;
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = DataSourceUtils.getConnection(dataSource);
+            pstmt = con.prepareStatement(sql);
+
+            for (TransferRequest request : requests) {
+                TransferSql.setParameters(pstmt, request.getSenderId(), request.getReceiverId(), request.getMoney());
+                pstmt.addBatch();
+            }
+
+            // 요청별 결과(반영된 row 수)를 알아야 하므로 batchSize로 나누지 않고 한 번에 전송
+            return pstmt.executeBatch();
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(con, pstmt, null);
+        }
+    }
+
     @Override
     public void delete(String memberId) {
         String sql = "delete from member where member_id=?";
@@ -132,6 +445,72 @@ public class MemberRepositoryV4_1 implements MemberRepository {
         }
     }
 
+    @Override
+    public void saveAll(Collection<Member> members) {
+        String sql = "insert into member(member_id, money) values (?, ?)";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = DataSourceUtils.getConnection(dataSource);
+            pstmt = con.prepareStatement(sql);
+
+            int count = 0;
+            for (Member member : members) {
+                pstmt.setString(1, member.getMemberId());
+                pstmt.setInt(2, member.getMoney());
+                pstmt.addBatch();
+
+                // batchSize 만큼 쌓일 때마다 한 번의 왕복으로 DB에 전송
+                if (++count % batchSize == 0) {
+                    pstmt.executeBatch();
+                }
+            }
+
+            // 마지막에 batchSize를 채우지 못하고 남은 것들 전송
+            if (count % batchSize != 0) {
+                pstmt.executeBatch();
+            }
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(con, pstmt, null);
+        }
+    }
+
+    @Override
+    public void updateAll(Map<String, Integer> moneyByMemberId) {
+        String sql = "update member set money=?, version=version+1 where member_id=?";
+
+        Connection con = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            con = DataSourceUtils.getConnection(dataSource);
+            pstmt = con.prepareStatement(sql);
+
+            int count = 0;
+            for (Map.Entry<String, Integer> entry : moneyByMemberId.entrySet()) {
+                pstmt.setInt(1, entry.getValue());
+                pstmt.setString(2, entry.getKey());
+                pstmt.addBatch();
+
+                if (++count % batchSize == 0) {
+                    pstmt.executeBatch();
+                }
+            }
+
+            if (count % batchSize != 0) {
+                pstmt.executeBatch();
+            }
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(con, pstmt, null);
+        }
+    }
+
     private void close(Connection con, Statement stmt, ResultSet rs) {
         closeResultSet(rs);
         closeStatement(stmt);
@@ -1,22 +1,49 @@
 package hello.jdbc.repository;
 
 import hello.jdbc.domain.Member;
+import hello.jdbc.domain.TransferRequest;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 
 import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * JdbcTemplate
  */
 @Slf4j
-public class MemberRepositoryV5 implements MemberRepository {
+public class MemberRepositoryV5 implements MemberRepository, TransferRepository {
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final int DEFAULT_FETCH_SIZE = 100;
 
     private final JdbcTemplate template;
+    // saveAll, updateAll 시에 한 번의 executeBatch()로 전송할 row 개수
+    private final int batchSize;
 
     public MemberRepositoryV5(DataSource dataSource) {
+        this(dataSource, DEFAULT_BATCH_SIZE);
+    }
+
+    public MemberRepositoryV5(DataSource dataSource, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
         this.template = new JdbcTemplate(dataSource);
+        this.batchSize = batchSize;
     }
 
     @Override
@@ -32,26 +59,179 @@ public class MemberRepositoryV5 implements MemberRepository {
         return template.queryForObject(sql, memberRowMapper(), memberId);
     }
 
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+        String sql = "select * from member where member_id = ? for update";
+        return template.queryForObject(sql, memberRowMapper(), memberId);
+    }
+
+    @Override
+    public Map<String, Member> findAllByIdsForUpdate(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return new HashMap<>();
+        }
+
+        List<String> sortedIds = InClause.sortedDistinct(ids);
+        String sql = InClause.selectForUpdateSql(sortedIds.size());
+
+        Map<String, Member> members = new HashMap<>();
+        for (Member member : template.query(sql, memberRowMapper(), sortedIds.toArray())) {
+            members.put(member.getMemberId(), member);
+        }
+        return members;
+    }
+
+    @Override
+    public Map<String, Member> findAllByIds(Collection<String> ids) {
+        Map<String, Member> members = new HashMap<>();
+
+        /*
+        청크 크기가 몇 가지로 고정되어 있기 때문에 같은 SQL 문자열이 반복해서 사용됨
+        따라서 커넥션 풀/DB 쪽의 statement 캐시를 그대로 재사용할 수 있음
+         */
+        for (List<String> chunk : InClause.chunks(ids)) {
+            String sql = InClause.selectSql(chunk.size());
+            for (Member member : template.query(sql, memberRowMapper(), chunk.toArray())) {
+                members.put(member.getMemberId(), member);
+            }
+        }
+
+        log.info("Found members={}", members.size());
+        return members;
+    }
+
+    /**
+     * member 테이블 전체를 List에 담지 않고 한 row씩 action에 넘겨줌 (정산, export 용도)
+     */
+    public void forEachMember(Consumer<Member> action) {
+        forEachMember(DEFAULT_FETCH_SIZE, false, action);
+    }
+
+    /**
+     * forward-only ResultSet을 fetchSize 단위로 읽어오기 때문에 테이블 크기와 상관없이 힙 사용량이 일정하게 유지됨
+     * reuseRow가 true면 모든 row에 같은 Member 객체를 재사용하므로, action 밖으로 Member 참조를 보관하지 않는 경우에만 사용해야함
+     */
+    public void forEachMember(int fetchSize, boolean reuseRow, Consumer<Member> action) {
+        String sql = "select member_id, money, version from member";
+
+        RowMapper<Member> rowMapper = memberRowMapper();
+        Member row = new Member();
+        RowCallbackHandler handler = rs -> action.accept(reuseRow ? mapMember(rs, row) : rowMapper.mapRow(rs, rs.getRow()));
+
+        template.query(con -> {
+            PreparedStatement pstmt = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            pstmt.setFetchSize(fetchSize);
+            return pstmt;
+        }, handler);
+    }
+
     // 쿼리 결과 row를 실제 객체에 매핑해주기 위한 Mapper를 반환하는 메서드
     private RowMapper<Member> memberRowMapper() {
-        return (rs, rowNum) -> {
-            Member member = new Member();
-            member.setMemberId(rs.getString("member_id"));
-            member.setMoney(rs.getInt("money"));
-            return member;
-        };
+        return (rs, rowNum) -> mapMember(rs, new Member());
+    }
+
+    // 현재 row의 값을 주어진 Member 객체에 채워서 반환
+    private Member mapMember(ResultSet rs, Member member) throws SQLException {
+        member.setMemberId(rs.getString("member_id"));
+        member.setMoney(rs.getInt("money"));
+        member.setVersion(rs.getLong("version"));
+        return member;
     }
 
     @Override
     public void update(String memberId, int money) {
-        String sql = "update member set money=? where member_id=?";
+        String sql = "update member set money=?, version=version+1 where member_id=?";
         template.update(sql, money, memberId);
     }
 
+    @Override
+    public void update(String memberId, int money, long expectedVersion) {
+        String sql = "update member set money=?, version=version+1 where member_id=? and version=?";
+        if (template.update(sql, money, memberId, expectedVersion) == 0) {
+            // 회원이 아예 없는 경우는 재시도해도 성공할 수 없으므로 version 충돌과 구분함
+            if (template.queryForList("select 1 from member where member_id = ?", Integer.class, memberId).isEmpty()) {
+                throw new EmptyResultDataAccessException("Member with member_id " + memberId + " does not exist.", 1);
+            }
+            throw new OptimisticLockingFailureException("version conflict: memberId=" + memberId + ", expectedVersion=" + expectedVersion);
+        }
+    }
+
+    @Override
+    public int addMoney(String memberId, int delta) {
+        String sql = "update member set money=money+?, version=version+1 where member_id=?";
+        return template.update(sql, delta, memberId);
+    }
+
+    @Override
+    public int debitIfSufficient(String memberId, int amount) {
+        String sql = "update member set money=money-?, version=version+1 where member_id=? and money>=?";
+        return template.update(sql, amount, memberId, amount);
+    }
+
+    @Override
+    public int[] addMoneyAll(Map<String, Integer> deltas) {
+        String sql = "update member set money=money+?, version=version+1 where member_id=? and money+?>=0";
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(deltas.entrySet());
+        return template.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Map.Entry<String, Integer> entry = entries.get(i);
+                ps.setInt(1, entry.getValue());
+                ps.setString(2, entry.getKey());
+                ps.setInt(3, entry.getValue());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return entries.size();
+            }
+        });
+    }
+
+    @Override
+    public int transfer(String senderId, String receiverId, int money) {
+        return template.update(TransferSql.TRANSFER, ps -> TransferSql.setParameters(ps, senderId, receiverId, money));
+    }
+
+    @Override
+    public int[] transferAll(List<TransferRequest> requests) {
+        return template.batchUpdate(TransferSql.TRANSFER, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                TransferRequest request = requests.get(i);
+                TransferSql.setParameters(ps, request.getSenderId(), request.getReceiverId(), request.getMoney());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return requests.size();
+            }
+        });
+    }
+
     @Override
     public void delete(String memberId) {
         String sql = "delete from member where member_id=?";
         template.update(sql, memberId);
     }
 
+    @Override
+    public void saveAll(Collection<Member> members) {
+        String sql = "insert into member(member_id, money) values (?, ?)";
+        // 내부적으로 batchSize 개씩 addBatch() 후 executeBatch() 해주므로, row 마다 DB와 왕복하지 않음
+        template.batchUpdate(sql, members, batchSize, (ps, member) -> {
+            ps.setString(1, member.getMemberId());
+            ps.setInt(2, member.getMoney());
+        });
+    }
+
+    @Override
+    public void updateAll(Map<String, Integer> moneyByMemberId) {
+        String sql = "update member set money=?, version=version+1 where member_id=?";
+        template.batchUpdate(sql, moneyByMemberId.entrySet(), batchSize, (ps, entry) -> {
+            ps.setInt(1, entry.getValue());
+            ps.setString(2, entry.getKey());
+        });
+    }
+
 }
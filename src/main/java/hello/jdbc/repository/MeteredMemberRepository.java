@@ -0,0 +1,116 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.metrics.StatementMetrics;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * 메서드(작업)별 호출 수, 실패 수, 지연시간, row 수를 StatementMetrics에 기록하는 MemberRepository 데코레이터
+ * row 수는 반환값으로 알 수 있는 경우(int, int[], 조회 결과)만 기록하고, void 메서드는 0으로 기록
+ */
+public class MeteredMemberRepository implements MemberRepository {
+
+    private final MemberRepository delegate;
+    private final StatementMetrics metrics;
+
+    public MeteredMemberRepository(MemberRepository delegate, StatementMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Member save(Member member) {
+        return record("save", () -> delegate.save(member), result -> 1);
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        return record("findById", () -> delegate.findById(memberId), result -> 1);
+    }
+
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+        return record("findByIdForUpdate", () -> delegate.findByIdForUpdate(memberId), result -> 1);
+    }
+
+    @Override
+    public Map<String, Member> findAllByIdsForUpdate(Collection<String> ids) {
+        return record("findAllByIdsForUpdate", () -> delegate.findAllByIdsForUpdate(ids), Map::size);
+    }
+
+    @Override
+    public void update(String memberId, int money) {
+        record("update", () -> delegate.update(memberId, money));
+    }
+
+    @Override
+    public void update(String memberId, int money, long expectedVersion) {
+        record("updateVersioned", () -> delegate.update(memberId, money, expectedVersion));
+    }
+
+    @Override
+    public void delete(String memberId) {
+        record("delete", () -> delegate.delete(memberId));
+    }
+
+    @Override
+    public int addMoney(String memberId, int delta) {
+        return record("addMoney", () -> delegate.addMoney(memberId, delta), Integer::longValue);
+    }
+
+    @Override
+    public int debitIfSufficient(String memberId, int amount) {
+        return record("debitIfSufficient", () -> delegate.debitIfSufficient(memberId, amount), Integer::longValue);
+    }
+
+    @Override
+    public int[] addMoneyAll(Map<String, Integer> deltas) {
+        return record("addMoneyAll", () -> delegate.addMoneyAll(deltas), MeteredMemberRepository::sum);
+    }
+
+    @Override
+    public void saveAll(Collection<Member> members) {
+        record("saveAll", () -> delegate.saveAll(members));
+    }
+
+    @Override
+    public void updateAll(Map<String, Integer> moneyByMemberId) {
+        record("updateAll", () -> delegate.updateAll(moneyByMemberId));
+    }
+
+    @Override
+    public Map<String, Member> findAllByIds(Collection<String> ids) {
+        return record("findAllByIds", () -> delegate.findAllByIds(ids), Map::size);
+    }
+
+    private <T> T record(String operation, Supplier<T> call, ToLongFunction<T> rows) {
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            metrics.recordOperation(operation, System.nanoTime() - start, 0, true);
+            throw e;
+        }
+        metrics.recordOperation(operation, System.nanoTime() - start, rows.applyAsLong(result), false);
+        return result;
+    }
+
+    private void record(String operation, Runnable call) {
+        record(operation, () -> {
+            call.run();
+            return null;
+        }, result -> 0);
+    }
+
+    private static long sum(int[] counts) {
+        // executeBatch()가 SUCCESS_NO_INFO(-2)를 반환하는 드라이버도 있으므로 음수는 제외
+        return Arrays.stream(counts).filter(count -> count > 0).sum();
+    }
+
+}
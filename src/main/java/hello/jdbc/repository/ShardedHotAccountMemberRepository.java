@@ -0,0 +1,322 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 입금이 몰리는 회원(hot account)의 잔고를 여러 row로 나누어 저장하는 MemberRepository 데코레이터
+ *
+ * hot 회원은 member 테이블의 row(main) 외에 member_sub_balance 테이블에 slots개의 row를 추가로 가지고,
+ * 실제 잔고는 main + 모든 sub row의 합이 됨.
+ *
+ * - 입금: sub row 중 하나에 round-robin으로 더함. 동시에 들어온 입금들이 서로 다른 row의 lock을 잡으므로 한 row에서 줄을 서지 않음
+ * - 출금: main row에서 차감. main 잔고가 부족하면 sub row들을 main으로 합친(consolidate) 뒤 다시 시도
+ * - 조회: main + sub 합계를 하나의 쿼리로 조회해서 반환하므로 호출하는 쪽은 차이를 알 수 없음
+ * - version: main과 sub row들의 version 합. 어느 row가 수정되어도 증가하므로 낙관적 lock도 그대로 동작함
+ *
+ * lock 순서 (여러 회원을 한 번에 처리하는 메서드도 같은 순서를 따르므로 동시에 호출되어도 서로 데드락에 걸리지 않음)
+ * - 일반 회원을 먼저 delegate로 처리한 뒤, hot 회원을 memberId 순서대로 처리
+ * - hot 회원 한 명의 row 전체는 lockHotMember()로만 잡고, 항상 main row -> sub row(slot 순서) 순서
+ * - 입금(credit)은 sub row 하나만 잡고 같은 회원의 main row는 잡지 않으므로 위 순서와 충돌하지 않음
+ * consolidate()와, main 잔고가 부족해서 consolidate가 필요한 hot 회원 출금은 트랜잭션 안에서 호출해야 함
+ * (트랜잭션 밖에서는 쿼리마다 lock이 풀려서, 합계를 읽고 옮기는 사이에 들어온 입금이 사라질 수 있음)
+ * hot 회원이 아닌 경우에는 전부 delegate에 그대로 위임
+ */
+public class ShardedHotAccountMemberRepository implements MemberRepository {
+
+    private final MemberRepository delegate;
+    private final JdbcTemplate template;
+    private final Set<String> hotMemberIds;
+    private final int slots;
+
+    private final AtomicInteger nextSlot = new AtomicInteger();
+
+    public ShardedHotAccountMemberRepository(MemberRepository delegate, DataSource dataSource, Set<String> hotMemberIds, int slots) {
+        this.delegate = delegate;
+        this.template = new JdbcTemplate(dataSource);
+        this.hotMemberIds = Set.copyOf(hotMemberIds);
+        this.slots = slots;
+    }
+
+    public boolean isHot(String memberId) {
+        return hotMemberIds.contains(memberId);
+    }
+
+    /**
+     * 이미 저장되어 있는 hot 회원의 sub row 중 없는 것을 만들어줌 (save()로 저장한 회원은 필요 없음)
+     */
+    public void initializeSlots(String memberId) {
+        List<Integer> existing = template.queryForList("select slot from member_sub_balance where member_id=?", Integer.class, memberId);
+
+        List<Object[]> missing = new ArrayList<>();
+        for (int slot = 0; slot < slots; slot++) {
+            if (!existing.contains(slot)) {
+                missing.add(new Object[]{memberId, slot});
+            }
+        }
+        template.batchUpdate("insert into member_sub_balance(member_id, slot) values (?, ?)", missing);
+    }
+
+    /**
+     * sub row들의 잔고를 모두 main row로 옮김. main row와 sub row 전부에 lock이 걸림
+     * lock을 트랜잭션이 끝날 때까지 유지해야 하므로 트랜잭션 안에서만 호출할 수 있음
+     */
+    public void consolidate(String memberId) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("consolidate requires an active transaction: memberId=" + memberId);
+        }
+        if (lockHotMember(memberId) == null) {
+            return;
+        }
+        // lock을 잡은 상태이므로 합계를 읽고 옮기는 사이에 다른 트랜잭션이 sub row를 수정할 수 없음
+        int subMoney = template.queryForObject("select coalesce(sum(money), 0) from member_sub_balance where member_id=?",
+                Integer.class, memberId);
+        if (subMoney != 0) {
+            clearSubBalance(memberId);
+            delegate.addMoney(memberId, subMoney);
+        }
+    }
+
+    @Override
+    public Member save(Member member) {
+        Member saved = delegate.save(member);
+        if (isHot(member.getMemberId())) {
+            initializeSlots(member.getMemberId());
+        }
+        return saved;
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        if (!isHot(memberId)) {
+            return delegate.findById(memberId);
+        }
+
+        String sql = "select m.member_id, m.money + coalesce(sum(s.money), 0) as money, m.version + coalesce(sum(s.version), 0) as version " +
+                "from member m left join member_sub_balance s on s.member_id = m.member_id " +
+                "where m.member_id=? group by m.member_id, m.money, m.version";
+        List<Member> members = template.query(sql, (rs, rowNum) ->
+                new Member(rs.getString("member_id"), rs.getInt("money"), rs.getLong("version")), memberId);
+
+        // 없는 회원일 때의 예외는 delegate 구현체의 것을 그대로 사용
+        return members.isEmpty() ? delegate.findById(memberId) : members.get(0);
+    }
+
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+        if (!isHot(memberId)) {
+            return delegate.findByIdForUpdate(memberId);
+        }
+        Member member = lockHotMember(memberId);
+        // 없는 회원일 때의 예외는 delegate 구현체의 것을 그대로 사용
+        return member != null ? member : delegate.findByIdForUpdate(memberId);
+    }
+
+    @Override
+    public Map<String, Member> findAllByIdsForUpdate(Collection<String> ids) {
+        List<String> normalIds = new ArrayList<>();
+        List<String> hotIds = new ArrayList<>();
+        for (String memberId : InClause.sortedDistinct(ids)) {
+            (isHot(memberId) ? hotIds : normalIds).add(memberId);
+        }
+
+        Map<String, Member> members = new HashMap<>();
+        if (!normalIds.isEmpty()) {
+            members.putAll(delegate.findAllByIdsForUpdate(normalIds));
+        }
+        for (String memberId : hotIds) {
+            Member member = lockHotMember(memberId);
+            if (member != null) {
+                members.put(memberId, member);
+            }
+        }
+        return members;
+    }
+
+    @Override
+    public Map<String, Member> findAllByIds(Collection<String> ids) {
+        Map<String, Member> members = delegate.findAllByIds(ids);
+        for (String memberId : new HashSet<>(ids)) {
+            if (members.containsKey(memberId) && isHot(memberId)) {
+                members.put(memberId, findById(memberId));
+            }
+        }
+        return members;
+    }
+
+    /*
+    잔고를 직접 지정하는 경우 main row와 sub row 전체에 lock을 건 뒤 sub row를 0으로 만들고 main row에 전체 잔고를 기록
+    lock을 잡기 전에 이미 다른 트랜잭션이 sub row에 입금했을 수 있으므로, 조회한 잔고로 계산한 값을 쓰려면 version을 넘겨서
+    그 사이의 입금을 충돌로 감지해야 함 (lock 없이 조회한 값으로 덮어쓰면 그 사이의 입금이 사라짐)
+    hot 회원에 대한 update()는 모든 sub row의 lock을 잡으므로, 입금을 분산시키려면 addMoney(), debitIfSufficient() 등을 사용해야 함
+     */
+    @Override
+    public void update(String memberId, int money) {
+        if (!isHot(memberId)) {
+            delegate.update(memberId, money);
+            return;
+        }
+        if (lockHotMember(memberId) != null) {
+            clearSubBalance(memberId);
+        }
+        delegate.update(memberId, money);
+    }
+
+    @Override
+    public void update(String memberId, int money, long expectedVersion) {
+        if (!isHot(memberId)) {
+            delegate.update(memberId, money, expectedVersion);
+            return;
+        }
+
+        // main, sub row의 version 합을 lock을 잡은 상태에서 비교하므로, 비교 이후 덮어쓰기 전까지 끼어드는 입금이 없음
+        Member current = findByIdForUpdate(memberId);
+        if (current.getVersion() != expectedVersion) {
+            throw new OptimisticLockingFailureException("version conflict: memberId=" + memberId + ", expectedVersion=" + expectedVersion);
+        }
+        clearSubBalance(memberId);
+        delegate.update(memberId, money);
+    }
+
+    @Override
+    public void delete(String memberId) {
+        if (isHot(memberId)) {
+            // 다른 메서드와 같은 순서(main row -> sub row)로 lock을 잡은 뒤 삭제
+            lockHotMember(memberId);
+            template.update("delete from member_sub_balance where member_id=?", memberId);
+        }
+        delegate.delete(memberId);
+    }
+
+    @Override
+    public int addMoney(String memberId, int delta) {
+        if (!isHot(memberId)) {
+            return delegate.addMoney(memberId, delta);
+        }
+        return delta >= 0 ? credit(memberId, delta) : delegate.addMoney(memberId, delta);
+    }
+
+    @Override
+    public int debitIfSufficient(String memberId, int amount) {
+        return isHot(memberId) ? debit(memberId, amount) : delegate.debitIfSufficient(memberId, amount);
+    }
+
+    @Override
+    public int[] addMoneyAll(Map<String, Integer> deltas) {
+        Map<String, Integer> normalDeltas = new LinkedHashMap<>();
+        deltas.forEach((memberId, delta) -> {
+            if (!isHot(memberId)) {
+                normalDeltas.put(memberId, delta);
+            }
+        });
+        if (normalDeltas.size() == deltas.size()) {
+            return delegate.addMoneyAll(deltas);
+        }
+
+        int[] normalCounts = normalDeltas.isEmpty() ? new int[0] : delegate.addMoneyAll(normalDeltas);
+
+        // 호출하는 쪽의 Map 순서와 상관없이 hot 회원은 memberId 순서대로 lock을 잡음
+        Map<String, Integer> hotCounts = new TreeMap<>();
+        deltas.forEach((memberId, delta) -> {
+            if (isHot(memberId)) {
+                hotCounts.put(memberId, delta);
+            }
+        });
+        for (Map.Entry<String, Integer> entry : hotCounts.entrySet()) {
+            int delta = entry.getValue();
+            // 반영 후 잔고가 음수가 되지 않는 경우에만 반영
+            entry.setValue(delta >= 0 ? credit(entry.getKey(), delta) : debit(entry.getKey(), -delta));
+        }
+
+        int[] counts = new int[deltas.size()];
+        int i = 0;
+        int normalIndex = 0;
+        for (String memberId : deltas.keySet()) {
+            counts[i++] = isHot(memberId) ? hotCounts.get(memberId) : normalCounts[normalIndex++];
+        }
+        return counts;
+    }
+
+    @Override
+    public void saveAll(Collection<Member> members) {
+        delegate.saveAll(members);
+        members.stream()
+                .map(Member::getMemberId)
+                .filter(this::isHot)
+                .forEach(this::initializeSlots);
+    }
+
+    @Override
+    public void updateAll(Map<String, Integer> moneyByMemberId) {
+        Map<String, Integer> normal = new LinkedHashMap<>();
+        Map<String, Integer> hot = new TreeMap<>();
+        moneyByMemberId.forEach((memberId, money) -> (isHot(memberId) ? hot : normal).put(memberId, money));
+
+        // 일반 회원 -> hot 회원(memberId 순서) 순서로 lock을 잡음
+        if (!normal.isEmpty()) {
+            delegate.updateAll(normal);
+        }
+        hot.forEach(this::update);
+    }
+
+    // 다음 sub row에 입금. sub row가 없으면 (initializeSlots() 전) main row에 입금
+    private int credit(String memberId, int money) {
+        int slot = Math.floorMod(nextSlot.getAndIncrement(), slots);
+        int count = template.update("update member_sub_balance set money=money+?, version=version+1 where member_id=? and slot=?",
+                money, memberId, slot);
+        return count == 1 ? 1 : delegate.addMoney(memberId, money);
+    }
+
+    private int debit(String memberId, int amount) {
+        if (delegate.debitIfSufficient(memberId, amount) == 1) {
+            return 1;
+        }
+        // main row 잔고만으로는 부족한 경우 sub row의 잔고를 모아서 다시 시도
+        consolidate(memberId);
+        return delegate.debitIfSufficient(memberId, amount);
+    }
+
+    // hot 회원의 row 전체에 lock을 거는 유일한 경로. main row -> sub row 순서로 lock을 걸고 합친 잔고, version을 반환 (없는 회원이면 null)
+    private Member lockHotMember(String memberId) {
+        Member member = delegate.findAllByIdsForUpdate(List.of(memberId)).get(memberId);
+        if (member != null) {
+            addSubBalance(member, lockSubBalance(memberId));
+        }
+        return member;
+    }
+
+    // lockHotMember()로 lock을 잡은 뒤에만 호출
+    private void clearSubBalance(String memberId) {
+        template.update("update member_sub_balance set money=0, version=version+1 where member_id=?", memberId);
+    }
+
+    // sub row 전체에 slot 순서대로 lock을 걸고 money, version의 합을 반환 (lockHotMember()에서만 호출)
+    private Member lockSubBalance(String memberId) {
+        Member sub = new Member(memberId, 0);
+        template.query("select money, version from member_sub_balance where member_id=? order by slot for update", rs -> {
+            sub.setMoney(sub.getMoney() + rs.getInt("money"));
+            sub.setVersion(sub.getVersion() + rs.getLong("version"));
+        }, memberId);
+        return sub;
+    }
+
+    private static void addSubBalance(Member member, Member sub) {
+        member.setMoney(member.getMoney() + sub.getMoney());
+        member.setVersion(member.getVersion() + sub.getVersion());
+    }
+
+}
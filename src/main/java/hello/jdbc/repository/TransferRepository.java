@@ -0,0 +1,24 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.TransferRequest;
+
+import java.util.List;
+
+/**
+ * 출금과 입금을 update 쿼리 하나로 처리하는 리포지토리 (MemberRepositoryV4_1, V4_2, V5)
+ *
+ * 이체 로직이 담긴 쿼리이므로 MemberRepository와 분리함. 따라서 MemberRepository 데코레이터는 이를 구현하지 않아도 되고,
+ * MemberServiceV4는 리포지토리가 이 인터페이스를 구현하지 않으면 debitIfSufficient + addMoney로 이체함
+ *
+ * 반영된 row 수가 2가 아니면(잔고 부족, 존재하지 않는 회원) 받는 회원 쪽만 반영되었을 수 있으므로,
+ * 호출한 쪽에서 트랜잭션(또는 세이브포인트)을 롤백해야 함
+ */
+public interface TransferRepository {
+
+    // 반영된 row 수를 반환 (2면 성공)
+    int transfer(String senderId, String receiverId, int money);
+
+    // transfer()를 JDBC 배치 하나로 묶어서 순서대로 실행. 요청별로 반영된 row 수를 반환
+    int[] transferAll(List<TransferRequest> requests);
+
+}
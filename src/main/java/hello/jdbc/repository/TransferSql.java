@@ -0,0 +1,32 @@
+package hello.jdbc.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * TransferRepository 구현체들이 함께 사용하는 단일 쿼리 이체 SQL
+ */
+final class TransferSql {
+
+    /*
+    보내는 회원이면 차감, 받는 회원이면 증가
+    잔고 조건은 별도의 서브쿼리가 아니라 수정되는 보내는 회원 row 자체에 걸기 때문에, 동시에 실행되어도 row lock을 잡은 시점의 잔고로 판단함
+    잔고가 부족하거나 한쪽 회원이 없으면 반영된 row 수가 2보다 작음
+     */
+    static final String TRANSFER = "update member set money=money+case when member_id=? then -? else ? end, version=version+1 " +
+            "where member_id in (?, ?) and (member_id<>? or money>=?)";
+
+    private TransferSql() {
+    }
+
+    static void setParameters(PreparedStatement pstmt, String senderId, String receiverId, int money) throws SQLException {
+        pstmt.setString(1, senderId);
+        pstmt.setInt(2, money);
+        pstmt.setInt(3, money);
+        pstmt.setString(4, senderId);
+        pstmt.setString(5, receiverId);
+        pstmt.setString(6, senderId);
+        pstmt.setInt(7, money);
+    }
+
+}
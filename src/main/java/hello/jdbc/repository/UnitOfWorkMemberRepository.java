@@ -0,0 +1,348 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.exception.MyDbException;
+import hello.jdbc.transaction.SavepointSynchronization;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * 트랜잭션 안의 save/update/delete를 모아두었다가 커밋 직전(beforeCommit)에 한 번에 반영하는 MemberRepository 데코레이터 (unit of work)
+ *
+ * - 같은 회원에 대한 쓰기는 마지막 값만 남김 (save 후 update -> 바뀐 값으로 save, save 후 delete -> 아무것도 안 함)
+ * - 반영 순서: delete -> saveAll -> updateAll (save와 update는 delegate의 JDBC 배치로 전송)
+ * - findById/findAllByIds는 아직 반영하지 않은 쓰기 결과를 포함해서 반환
+ * - DB에서 계산하는 쓰기(addMoney, debitIfSufficient 등)와 lock 조회, 낙관적 lock update 전에는 모아둔 쓰기를 먼저 반영
+ * - 트랜잭션(동기화)이 없는 호출은 그대로 delegate에 위임
+ * - 세이브포인트를 만들기 전에 모아둔 쓰기를 반영하고, 세이브포인트로 되돌리면 그 이후에 모아둔 쓰기를 버림.
+ *   세이브포인트는 Savepoints를 통해 만들고 되돌려야 함 (TransactionStatus를 직접 사용하면 세이브포인트 이전의 쓰기가
+ *   세이브포인트 이후에 반영되어 함께 롤백되거나, 되돌린 쓰기가 커밋 시점에 반영될 수 있음)
+ *
+ * 쓰기 오류(중복 키 등)는 호출 시점이 아닌 커밋 시점에 발생하고, 트랜잭션은 롤백됨.
+ * MemberRepositoryV4_1처럼 SQLException을 MyDbException으로 감싸는 delegate의 오류도 MemberRepositoryV4_2와 같은
+ * SQLErrorCodeSQLExceptionTranslator로 변환해서 스프링 예외(DuplicateKeyException 등)로 던짐
+ */
+@Slf4j
+public class UnitOfWorkMemberRepository implements MemberRepository {
+
+    private final MemberRepository delegate;
+    private final SQLExceptionTranslator exceptionTranslator;
+
+    public UnitOfWorkMemberRepository(MemberRepository delegate, DataSource dataSource) {
+        this.delegate = delegate;
+        this.exceptionTranslator = new SQLErrorCodeSQLExceptionTranslator(dataSource);
+    }
+
+    @Override
+    public Member save(Member member) {
+        UnitOfWork unitOfWork = unitOfWork();
+        if (unitOfWork == null) {
+            return delegate.save(member);
+        }
+        unitOfWork.save(member.getMemberId(), member.getMoney());
+        return member;
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        UnitOfWork unitOfWork = unitOfWork();
+        PendingWrite pending = unitOfWork == null ? null : unitOfWork.writes.get(memberId);
+        if (pending == null) {
+            return delegate.findById(memberId);
+        }
+
+        switch (pending.type) {
+            case DELETE:
+                throw new NoSuchElementException("Member with member_id " + memberId + " does not exist.");
+            case SAVE:
+                return new Member(memberId, pending.money, 0);
+            case UPDATE:
+            default:
+                // 반영되면 version이 1 증가함
+                Member member = delegate.findById(memberId);
+                return new Member(memberId, pending.money, member.getVersion() + 1);
+        }
+    }
+
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+        flush();
+        return delegate.findByIdForUpdate(memberId);
+    }
+
+    @Override
+    public Map<String, Member> findAllByIdsForUpdate(Collection<String> ids) {
+        flush();
+        return delegate.findAllByIdsForUpdate(ids);
+    }
+
+    @Override
+    public void update(String memberId, int money) {
+        UnitOfWork unitOfWork = unitOfWork();
+        if (unitOfWork == null) {
+            delegate.update(memberId, money);
+            return;
+        }
+        unitOfWork.update(memberId, money);
+    }
+
+    // 조회 시점의 version과 비교해야 하므로 모아둔 쓰기를 반영한 뒤 바로 실행
+    @Override
+    public void update(String memberId, int money, long expectedVersion) {
+        flush();
+        delegate.update(memberId, money, expectedVersion);
+    }
+
+    @Override
+    public void delete(String memberId) {
+        UnitOfWork unitOfWork = unitOfWork();
+        if (unitOfWork == null) {
+            delegate.delete(memberId);
+            return;
+        }
+        unitOfWork.delete(memberId);
+    }
+
+    @Override
+    public int addMoney(String memberId, int delta) {
+        flush();
+        return delegate.addMoney(memberId, delta);
+    }
+
+    @Override
+    public int debitIfSufficient(String memberId, int amount) {
+        flush();
+        return delegate.debitIfSufficient(memberId, amount);
+    }
+
+    @Override
+    public int[] addMoneyAll(Map<String, Integer> deltas) {
+        flush();
+        return delegate.addMoneyAll(deltas);
+    }
+
+    @Override
+    public void saveAll(Collection<Member> members) {
+        UnitOfWork unitOfWork = unitOfWork();
+        if (unitOfWork == null) {
+            delegate.saveAll(members);
+            return;
+        }
+        members.forEach(member -> unitOfWork.save(member.getMemberId(), member.getMoney()));
+    }
+
+    @Override
+    public void updateAll(Map<String, Integer> moneyByMemberId) {
+        UnitOfWork unitOfWork = unitOfWork();
+        if (unitOfWork == null) {
+            delegate.updateAll(moneyByMemberId);
+            return;
+        }
+        moneyByMemberId.forEach(unitOfWork::update);
+    }
+
+    @Override
+    public Map<String, Member> findAllByIds(Collection<String> ids) {
+        UnitOfWork unitOfWork = unitOfWork();
+        if (unitOfWork == null || unitOfWork.writes.isEmpty()) {
+            return delegate.findAllByIds(ids);
+        }
+
+        Map<String, Member> members = new HashMap<>(delegate.findAllByIds(ids));
+        for (String memberId : ids) {
+            PendingWrite pending = unitOfWork.writes.get(memberId);
+            if (pending == null) {
+                continue;
+            }
+            if (pending.type == WriteType.DELETE) {
+                members.remove(memberId);
+            } else if (pending.type == WriteType.SAVE) {
+                members.put(memberId, new Member(memberId, pending.money, 0));
+            } else if (members.containsKey(memberId)) {
+                members.put(memberId, new Member(memberId, pending.money, members.get(memberId).getVersion() + 1));
+            }
+        }
+        return members;
+    }
+
+    /**
+     * 현재 트랜잭션에서 모아둔 쓰기를 바로 DB에 반영
+     */
+    public void flush() {
+        UnitOfWork unitOfWork = currentUnitOfWork();
+        if (unitOfWork != null) {
+            unitOfWork.flush();
+        }
+    }
+
+    // 현재 트랜잭션에서 아직 반영하지 않은 회원 수
+    public int getPendingCount() {
+        UnitOfWork unitOfWork = currentUnitOfWork();
+        return unitOfWork == null ? 0 : unitOfWork.writes.size();
+    }
+
+    private UnitOfWork currentUnitOfWork() {
+        return (UnitOfWork) TransactionSynchronizationManager.getResource(this);
+    }
+
+    /**
+     * 현재 트랜잭션의 unit of work. 트랜잭션 동기화가 활성화되어 있지 않으면 null
+     */
+    private UnitOfWork unitOfWork() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+
+        UnitOfWork unitOfWork = currentUnitOfWork();
+        if (unitOfWork == null) {
+            unitOfWork = new UnitOfWork();
+            TransactionSynchronizationManager.bindResource(this, unitOfWork);
+            TransactionSynchronizationManager.registerSynchronization(unitOfWork);
+        }
+        return unitOfWork;
+    }
+
+    private enum WriteType {
+        SAVE, UPDATE, DELETE
+    }
+
+    private static class PendingWrite {
+
+        private final WriteType type;
+        private final int money;
+        // delete 후 다시 save한 경우: 기존 row를 먼저 지운 뒤 insert
+        private final boolean deleteFirst;
+
+        PendingWrite(WriteType type, int money, boolean deleteFirst) {
+            this.type = type;
+            this.money = money;
+            this.deleteFirst = deleteFirst;
+        }
+    }
+
+    private class UnitOfWork implements SavepointSynchronization {
+
+        // 쓰기 순서를 유지해서 배치도 호출 순서대로 전송
+        private final Map<String, PendingWrite> writes = new LinkedHashMap<>();
+
+        void save(String memberId, int money) {
+            PendingWrite previous = writes.get(memberId);
+            boolean deleteFirst = previous != null && (previous.type == WriteType.DELETE || previous.deleteFirst);
+            writes.put(memberId, new PendingWrite(WriteType.SAVE, money, deleteFirst));
+        }
+
+        void update(String memberId, int money) {
+            PendingWrite previous = writes.get(memberId);
+            if (previous == null || previous.type == WriteType.UPDATE) {
+                writes.put(memberId, new PendingWrite(WriteType.UPDATE, money, false));
+            } else if (previous.type == WriteType.SAVE) {
+                // 아직 insert 전이므로 바뀐 값으로 insert
+                writes.put(memberId, new PendingWrite(WriteType.SAVE, money, previous.deleteFirst));
+            }
+            // 삭제 예정인 회원의 update는 반영될 row가 없으므로 무시
+        }
+
+        void delete(String memberId) {
+            PendingWrite previous = writes.get(memberId);
+            if (previous != null && previous.type == WriteType.SAVE && !previous.deleteFirst) {
+                // 이번 트랜잭션에서 저장하려던 회원이므로 DB에 보낼 것이 없음
+                writes.remove(memberId);
+                return;
+            }
+            writes.put(memberId, new PendingWrite(WriteType.DELETE, 0, false));
+        }
+
+        // TransactionStatus.flush() 호출 시에도 반영
+        @Override
+        public void flush() {
+            if (writes.isEmpty()) {
+                return;
+            }
+
+            List<String> deletes = new ArrayList<>();
+            List<Member> saves = new ArrayList<>();
+            Map<String, Integer> updates = new LinkedHashMap<>();
+            writes.forEach((memberId, write) -> {
+                if (write.type == WriteType.DELETE || write.deleteFirst) {
+                    deletes.add(memberId);
+                }
+                if (write.type == WriteType.SAVE) {
+                    saves.add(new Member(memberId, write.money));
+                } else if (write.type == WriteType.UPDATE) {
+                    updates.put(memberId, write.money);
+                }
+            });
+            writes.clear();
+
+            log.debug("flush deletes={}, saves={}, updates={}", deletes.size(), saves.size(), updates.size());
+            try {
+                deletes.forEach(delegate::delete);
+                if (!saves.isEmpty()) {
+                    delegate.saveAll(saves);
+                }
+                if (!updates.isEmpty()) {
+                    delegate.updateAll(updates);
+                }
+            } catch (MyDbException e) {
+                throw translate(e);
+            }
+        }
+
+        private RuntimeException translate(MyDbException e) {
+            if (e.getCause() instanceof SQLException) {
+                RuntimeException translated = exceptionTranslator.translate("flush", null, (SQLException) e.getCause());
+                if (translated != null) {
+                    return translated;
+                }
+            }
+            return e;
+        }
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResourceIfPossible(UnitOfWorkMemberRepository.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(UnitOfWorkMemberRepository.this, this);
+        }
+
+        // 세이브포인트 이전의 쓰기는 세이브포인트로 되돌려도 남아 있어야 하므로 미리 반영
+        @Override
+        public void beforeSavepoint() {
+            flush();
+        }
+
+        // 모아둔 쓰기는 모두 마지막 세이브포인트 이후의 것이므로 DB와 함께 되돌림
+        @Override
+        public void afterRollbackToSavepoint() {
+            writes.clear();
+        }
+
+        // 읽기 전용 트랜잭션이라도 쓰기를 호출했다면 반영 (delegate를 직접 쓸 때와 같은 동작)
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            flush();
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(UnitOfWorkMemberRepository.this);
+            writes.clear();
+        }
+    }
+
+}
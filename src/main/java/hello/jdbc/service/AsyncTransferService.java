@@ -0,0 +1,213 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.TransferRequest;
+import hello.jdbc.domain.TransferResult;
+import hello.jdbc.metrics.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 이체를 별도 스레드 풀에서 실행하고 결과를 CompletableFuture로 돌려주는 비동기 앞단
+ *
+ * 스레드 수는 커넥션 풀 크기에 맞춰서 지정. 스레드가 커넥션보다 많으면 남는 스레드는 어차피 커넥션을 기다리기만 함.
+ * 모든 스레드가 바쁘면 요청은 크기가 제한된 큐에서 기다리고, 큐까지 가득 차면 RejectionPolicy에 따라 바로 거절하므로
+ * 처리 용량을 넘는 요청이 들어와도 커넥션 풀 타임아웃까지 붙잡혀 있지 않음
+ *
+ * 반환한 future는 예외로 완료되지 않음. 이체 중 발생한 예외와 거절(큐 초과, 종료 후 요청)은 모두 실패 TransferResult로 반환
+ */
+@Slf4j
+public class AsyncTransferService implements AutoCloseable {
+
+    public enum RejectionPolicy {
+        // 새 요청을 즉시 실패 처리
+        ABORT,
+        // 큐에서 가장 오래 기다린 요청을 실패 처리하고 새 요청을 넣음
+        DISCARD_OLDEST,
+        // 요청한 스레드가 직접 실행 (요청하는 쪽의 속도를 자연스럽게 늦춤)
+        CALLER_RUNS
+    }
+
+    // @Transactional이 적용된 프록시 객체를 넘겨받아야 함
+    private final MemberServiceV4 memberService;
+    private final BlockingQueue<Runnable> queue;
+    private final int queueCapacity;
+    private final ThreadPoolExecutor executor;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    // 큐에 들어간 뒤 실행되기까지 기다린 시간
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+
+    public AsyncTransferService(MemberServiceV4 memberService, int threads, int queueCapacity, RejectionPolicy rejectionPolicy) {
+        this.memberService = memberService;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.queueCapacity = queueCapacity;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                queue, threadFactory(), rejectionHandler(rejectionPolicy));
+    }
+
+    public CompletableFuture<TransferResult> transfer(String senderId, String receiverId, int money) {
+        return transfer(senderId, receiverId, money, null);
+    }
+
+    // strategy가 null이면 MemberServiceV4에 설정된 기본 방식으로 이체
+    public CompletableFuture<TransferResult> transfer(String senderId, String receiverId, int money, TransferStrategy strategy) {
+        TransferTask task = new TransferTask(new TransferRequest(senderId, receiverId, money), strategy);
+        submitted.increment();
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // ABORT 정책이거나 이미 종료된 경우
+            task.reject(e.getMessage());
+        }
+        maxQueueDepth.accumulateAndGet(queue.size(), Math::max);
+        return task.future;
+    }
+
+    /**
+     * 더 이상 요청을 받지 않고, 큐에 들어있는 요청까지 처리한 뒤 종료
+     * 제한 시간 안에 끝나지 않거나 기다리는 도중 인터럽트되면, 아직 실행되지 않은 요청은 거절 결과로 완료시킴
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        boolean terminated = false;
+        try {
+            terminated = executor.awaitTermination(1, TimeUnit.MINUTES);
+            if (!terminated) {
+                log.warn("AsyncTransferService did not terminate, queued={}", queue.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (!terminated) {
+            for (Runnable runnable : executor.shutdownNow()) {
+                ((TransferTask) runnable).reject("AsyncTransferService is closed");
+            }
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    public int getRemainingCapacity() {
+        return queue.remainingCapacity();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    public LatencyHistogram getQueueWaitHistogram() {
+        return queueWait;
+    }
+
+    private RejectedExecutionHandler rejectionHandler(RejectionPolicy policy) {
+        switch (policy) {
+            case DISCARD_OLDEST:
+                return (runnable, executor) -> {
+                    if (executor.isShutdown()) {
+                        ((TransferTask) runnable).reject("AsyncTransferService is closed");
+                        return;
+                    }
+                    Runnable oldest = queue.poll();
+                    if (oldest != null) {
+                        ((TransferTask) oldest).reject("Discarded by a newer transfer");
+                    }
+                    executor.execute(runnable);
+                };
+            case CALLER_RUNS:
+                return (runnable, executor) -> {
+                    if (executor.isShutdown()) {
+                        ((TransferTask) runnable).reject("AsyncTransferService is closed");
+                        return;
+                    }
+                    runnable.run();
+                };
+            case ABORT:
+            default:
+                return (runnable, executor) -> {
+                    throw new RejectedExecutionException("Transfer queue is full, capacity=" + queueCapacity);
+                };
+        }
+    }
+
+    private static ThreadFactory threadFactory() {
+        AtomicInteger sequence = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "async-transfer-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private class TransferTask implements Runnable {
+
+        private final TransferRequest request;
+        private final TransferStrategy strategy;
+        private final CompletableFuture<TransferResult> future = new CompletableFuture<>();
+        private final long enqueuedAt = System.nanoTime();
+
+        TransferTask(TransferRequest request, TransferStrategy strategy) {
+            this.request = request;
+            this.strategy = strategy;
+        }
+
+        @Override
+        public void run() {
+            queueWait.record(System.nanoTime() - enqueuedAt);
+            try {
+                if (strategy == null) {
+                    memberService.transfer(request.getSenderId(), request.getReceiverId(), request.getMoney());
+                } else {
+                    memberService.transfer(request.getSenderId(), request.getReceiverId(), request.getMoney(), strategy);
+                }
+                future.complete(TransferResult.success(request));
+            } catch (RuntimeException e) {
+                future.complete(TransferResult.failure(request, e.getMessage()));
+            } catch (Error e) {
+                // Error는 그대로 던지되, 요청자가 결과를 무한히 기다리지 않도록 실패 결과로 완료시킴
+                future.complete(TransferResult.failure(request, e.toString()));
+                throw e;
+            } finally {
+                completed.increment();
+            }
+        }
+
+        void reject(String reason) {
+            rejected.increment();
+            future.complete(TransferResult.failure(request, "rejected: " + reason));
+        }
+    }
+
+}
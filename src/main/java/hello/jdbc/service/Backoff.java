@@ -0,0 +1,37 @@
+package hello.jdbc.service;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 재시도 간격 계산 (exponential backoff + full jitter)
+ *
+ * n번째 재시도 전에 0 ~ min(max, base * 2^(n-1)) 사이의 임의 시간만큼 대기.
+ * 충돌한 스레드들이 같은 간격으로 동시에 다시 시도해서 또 충돌하는 일을 막기 위해 대기 시간을 무작위로 흩뜨림
+ */
+public class Backoff {
+
+    // base << 30 이상은 의미가 없으므로 지수를 제한해서 overflow를 막음
+    private static final int MAX_SHIFT = 30;
+
+    private final long baseNanos;
+    private final long maxNanos;
+
+    public Backoff(Duration base, Duration max) {
+        this.baseNanos = base.toNanos();
+        this.maxNanos = max.toNanos();
+    }
+
+    // attempt: 1부터 시작하는 재시도 횟수
+    public long delayNanos(int attempt) {
+        int shift = Math.min(Math.max(attempt - 1, 0), MAX_SHIFT);
+        long ceiling = baseNanos > (maxNanos >> shift) ? maxNanos : baseNanos << shift;
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    public void sleep(int attempt) throws InterruptedException {
+        TimeUnit.NANOSECONDS.sleep(delayNanos(attempt));
+    }
+
+}
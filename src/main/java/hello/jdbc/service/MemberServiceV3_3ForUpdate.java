@@ -0,0 +1,48 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV3;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.SQLException;
+
+/**
+ * MemberServiceV3_3과 같은 @Transactional 이체에, 두 회원을 select ... for update로 조회하도록 한 버전
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class MemberServiceV3_3ForUpdate {
+
+    private final MemberRepositoryV3 memberRepository;
+
+    @Transactional
+    public void transfer(String senderId, String receiverId, int money) throws SQLException {
+        bizLogic(senderId, receiverId, money);
+    }
+
+    private void bizLogic(String senderId, String receiverId, int money) throws SQLException {
+        /*
+        조회와 동시에 row lock을 걸어서 다른 트랜잭션이 중간에 잔고를 바꾸지 못하게 함 (갱신 손실 방지)
+        A->B, B->A 이체가 동시에 실행되어도 데드락이 생기지 않도록 항상 memberId 순서대로 lock을 잡음
+         */
+        boolean senderFirst = senderId.compareTo(receiverId) <= 0;
+        Member first = memberRepository.findByIdForUpdate(senderFirst ? senderId : receiverId);
+        Member second = memberRepository.findByIdForUpdate(senderFirst ? receiverId : senderId);
+
+        Member sender = senderFirst ? first : second;
+        Member receiver = senderFirst ? second : first;
+
+        memberRepository.update(senderId, sender.getMoney() - money);
+        validation(receiver);
+        memberRepository.update(receiverId, receiver.getMoney() + money);
+    }
+
+    private void validation(Member receiver) {
+        if (receiver.getMemberId().equals("ex")) {
+            throw new IllegalStateException("이체 작업 도중 예외 발생!");
+        }
+    }
+
+}
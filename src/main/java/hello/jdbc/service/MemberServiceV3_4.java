@@ -0,0 +1,44 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.transaction.TransactionRunner;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.SQLException;
+
+/**
+ * 트랜잭션 - TransactionRunner
+ * 프록시 없이 코드로 트랜잭션을 적용하지만, TransactionTemplate(V3_2)과 달리 콜백에서 SQLException을 그대로 던질 수 있어서 try-catch가 필요 없음
+ */
+@Slf4j
+public class MemberServiceV3_4 {
+
+    private final TransactionRunner transactionRunner;
+    private final MemberRepositoryV3 memberRepository;
+
+    public MemberServiceV3_4(TransactionRunner transactionRunner, MemberRepositoryV3 memberRepository) {
+        this.transactionRunner = transactionRunner;
+        this.memberRepository = memberRepository;
+    }
+
+    public void transfer(String senderId, String receiverId, int money) {
+        transactionRunner.runWithoutResult(con -> bizLogic(senderId, receiverId, money));
+    }
+
+    private void bizLogic(String senderId, String receiverId, int money) throws SQLException {
+        Member sender = memberRepository.findById(senderId);
+        Member receiver = memberRepository.findById(receiverId);
+
+        memberRepository.update(senderId, sender.getMoney() - money);
+        validation(receiver);
+        memberRepository.update(receiverId, receiver.getMoney() + money);
+    }
+
+    private void validation(Member receiver) {
+        if (receiver.getMemberId().equals("ex")) {
+            throw new IllegalStateException("이체 작업 도중 예외 발생!");
+        }
+    }
+
+}
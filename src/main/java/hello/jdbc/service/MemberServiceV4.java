@@ -1,33 +1,250 @@
 package hello.jdbc.service;
 
 import hello.jdbc.domain.Member;
+import hello.jdbc.domain.TransferRequest;
+import hello.jdbc.domain.TransferResult;
 import hello.jdbc.repository.MemberRepository;
-import lombok.RequiredArgsConstructor;
+import hello.jdbc.repository.TransferRepository;
+import hello.jdbc.transaction.Savepoints;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 
 @Slf4j
-@RequiredArgsConstructor
 public class MemberServiceV4 {
 
     private final MemberRepository memberRepository;
+    // 단일 쿼리 이체를 지원하지 않는 리포지토리(데코레이터 등)면 null
+    private final TransferRepository transferRepository;
+    private final TransferStrategy transferStrategy;
+
+    public MemberServiceV4(MemberRepository memberRepository) {
+        this(memberRepository, TransferStrategy.READ_MODIFY_WRITE);
+    }
+
+    public MemberServiceV4(MemberRepository memberRepository, TransferStrategy transferStrategy) {
+        this.memberRepository = memberRepository;
+        this.transferRepository = memberRepository instanceof TransferRepository ? (TransferRepository) memberRepository : null;
+        this.transferStrategy = transferStrategy;
+    }
 
     @Transactional
     public void transfer(String senderId, String receiverId, int money) {
-        bizLogic(senderId, receiverId, money);
+        bizLogic(senderId, receiverId, money, transferStrategy);
+    }
+
+    // 호출마다 이체 방식을 직접 선택
+    @Transactional
+    public void transfer(String senderId, String receiverId, int money, TransferStrategy strategy) {
+        bizLogic(senderId, receiverId, money, strategy);
     }
 
-    private void bizLogic(String senderId, String receiverId, int money) {
+    /**
+     * 여러 건의 이체를 트랜잭션 하나로 처리하고, 요청 순서대로 건별 결과를 반환
+     *
+     * 1. validation에 걸리는 건은 DB에 반영하지 않고 바로 실패 처리
+     * 2. 나머지는 세이브포인트를 잡은 뒤 단일 쿼리 이체를 JDBC 배치 하나로 전송
+     *    모든 건이 두 row씩 반영되었다면 그대로 성공
+     * 3. 실패한 건이 있거나(잔고 부족 등으로 한쪽만 반영되었을 수 있음) DB 예외가 발생하면 세이브포인트로 되돌린 뒤,
+     *    건마다 세이브포인트를 잡고 하나씩 다시 처리 -> 실패한 건만 롤백되고 나머지 건은 그대로 커밋됨
+     *    리포지토리가 TransferRepository를 구현하지 않으면 처음부터 건별로 처리
+     */
+    @Transactional
+    public List<TransferResult> transferAll(List<TransferRequest> requests) {
+        return transferBatch(requests, false);
+    }
+
+    /**
+     * transferAll()과 같지만, 먼저 회원별 순 변동액으로 합산해서 회원당 update 한 번으로 반영을 시도함
+     * 같은 회원이 여러 번 등장할수록 DB에 보내는 쿼리 수가 줄어듦
+     * 잔고 확인은 건별 순서가 아닌 배치 전체의 최종 잔고 기준이며, 합산 반영이 불가능하면(잔고 부족, 없는 회원) transferAll()과 같은 방식으로 처리
+     */
+    @Transactional
+    public List<TransferResult> transferAllNetted(List<TransferRequest> requests) {
+        return transferBatch(requests, true);
+    }
+
+    private List<TransferResult> transferBatch(List<TransferRequest> requests, boolean netting) {
+        TransferResult[] results = new TransferResult[requests.size()];
+        List<Integer> batchIndexes = new ArrayList<>();
+        List<TransferRequest> batch = new ArrayList<>();
+
+        for (int i = 0; i < requests.size(); i++) {
+            TransferRequest request = requests.get(i);
+            try {
+                validation(request.getReceiverId());
+                batchIndexes.add(i);
+                batch.add(request);
+            } catch (IllegalStateException e) {
+                results[i] = TransferResult.failure(request, e.getMessage());
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            // @Transactional 프록시가 시작한 현재 트랜잭션
+            TransactionStatus status = TransactionAspectSupport.currentTransactionStatus();
+
+            if (!netting || !applyNetted(status, batch, batchIndexes, results)) {
+                applyBatch(status, batch, batchIndexes, results);
+            }
+        }
+
+        return Arrays.asList(results);
+    }
+
+    private boolean applyNetted(TransactionStatus status, List<TransferRequest> batch, List<Integer> batchIndexes, TransferResult[] results) {
+        Map<String, Integer> deltas = TransferNetting.netDeltas(batch);
+        Object savepoint = Savepoints.create(status);
+
+        try {
+            int[] counts = memberRepository.addMoneyAll(deltas);
+            if (Arrays.stream(counts).allMatch(count -> count == 1)) {
+                status.releaseSavepoint(savepoint);
+
+                for (int i = 0; i < batch.size(); i++) {
+                    TransferRequest request = batch.get(i);
+                    // DB에는 합산된 값만 반영되므로, 건별 이체 내역은 결과와 로그로 남김
+                    log.info("Transfer sender={}, receiver={}, money={} (netted)", request.getSenderId(), request.getReceiverId(), request.getMoney());
+                    results[batchIndexes.get(i)] = TransferResult.success(request);
+                }
+                return true;
+            }
+        } catch (RuntimeException e) {
+            log.warn("합산 이체 실패, 건별로 다시 처리", e);
+        }
+
+        Savepoints.rollbackTo(status, savepoint);
+        status.releaseSavepoint(savepoint);
+        return false;
+    }
+
+    private void applyBatch(TransactionStatus status, List<TransferRequest> batch, List<Integer> batchIndexes, TransferResult[] results) {
+        Object savepoint = Savepoints.create(status);
+
+        try {
+            if (transferRepository != null) {
+                int[] counts = transferRepository.transferAll(batch);
+                if (Arrays.stream(counts).allMatch(count -> count == 2)) {
+                    status.releaseSavepoint(savepoint);
+                    for (int i = 0; i < batch.size(); i++) {
+                        results[batchIndexes.get(i)] = TransferResult.success(batch.get(i));
+                    }
+                    return;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("배치 이체 실패, 건별로 다시 처리", e);
+        }
+
+        Savepoints.rollbackTo(status, savepoint);
+        status.releaseSavepoint(savepoint);
+
+        for (int i = 0; i < batch.size(); i++) {
+            results[batchIndexes.get(i)] = transferWithSavepoint(status, batch.get(i));
+        }
+    }
+
+    private TransferResult transferWithSavepoint(TransactionStatus status, TransferRequest request) {
+        Object savepoint = Savepoints.create(status);
+        try {
+            singleStatement(request.getSenderId(), request.getReceiverId(), request.getMoney());
+            status.releaseSavepoint(savepoint);
+            return TransferResult.success(request);
+        } catch (RuntimeException e) {
+            // 이 건에서 반영한 내용만 되돌림
+            Savepoints.rollbackTo(status, savepoint);
+            status.releaseSavepoint(savepoint);
+            return TransferResult.failure(request, e.getMessage());
+        }
+    }
+
+    private void bizLogic(String senderId, String receiverId, int money, TransferStrategy strategy) {
+        switch (strategy) {
+            case SINGLE_STATEMENT:
+                singleStatement(senderId, receiverId, money);
+                break;
+            case PESSIMISTIC_LOCK:
+                pessimisticLock(senderId, receiverId, money);
+                break;
+            case OPTIMISTIC_LOCK:
+                optimisticLock(senderId, receiverId, money);
+                break;
+            case READ_MODIFY_WRITE:
+            default:
+                readModifyWrite(senderId, receiverId, money);
+        }
+    }
+
+    private void readModifyWrite(String senderId, String receiverId, int money) {
         Member sender = memberRepository.findById(senderId);
         Member receiver = memberRepository.findById(receiverId);
 
         memberRepository.update(senderId, sender.getMoney() - money);
-        validation(receiver);
+        validation(receiver.getMemberId());
+        memberRepository.update(receiverId, receiver.getMoney() + money);
+    }
+
+    private void pessimisticLock(String senderId, String receiverId, int money) {
+        // 두 row의 lock을 쿼리 하나로, 항상 memberId 순서대로 잡으므로 A->B와 B->A가 동시에 실행되어도 데드락이 생기지 않음
+        Map<String, Member> members = memberRepository.findAllByIdsForUpdate(List.of(senderId, receiverId));
+        Member sender = members.get(senderId);
+        Member receiver = members.get(receiverId);
+
+        if (sender == null || receiver == null) {
+            throw new IllegalStateException("이체 실패: 존재하지 않는 회원");
+        }
+
+        memberRepository.update(senderId, sender.getMoney() - money);
+        validation(receiver.getMemberId());
         memberRepository.update(receiverId, receiver.getMoney() + money);
     }
 
-    private void validation(Member receiver) {
-        if (receiver.getMemberId().equals("ex")) {
+    private void optimisticLock(String senderId, String receiverId, int money) {
+        // row lock은 update 순간에만 잡히므로 충돌이 드문 경우 비관적 lock보다 lock 보유 시간이 짧음
+        Member sender = memberRepository.findById(senderId);
+        Member receiver = memberRepository.findById(receiverId);
+
+        validation(receiver.getMemberId());
+
+        /*
+        그 사이 다른 트랜잭션이 수정했다면 예외가 발생하고 트랜잭션 전체가 롤백됨 (재시도는 OptimisticRetryTransferService)
+        update 순간 잡히는 row lock도 memberId 순서대로 잡아서, A->B와 B->A가 동시에 실행되어도 데드락이 생기지 않도록 함
+         */
+        if (senderId.compareTo(receiverId) < 0) {
+            memberRepository.update(senderId, sender.getMoney() - money, sender.getVersion());
+            memberRepository.update(receiverId, receiver.getMoney() + money, receiver.getVersion());
+        } else {
+            memberRepository.update(receiverId, receiver.getMoney() + money, receiver.getVersion());
+            memberRepository.update(senderId, sender.getMoney() - money, sender.getVersion());
+        }
+    }
+
+    private void singleStatement(String senderId, String receiverId, int money) {
+        if (!applyTransfer(senderId, receiverId, money)) {
+            // 한쪽만 반영되었을 수 있으므로 예외를 던져서 트랜잭션(세이브포인트)을 롤백
+            throw new IllegalStateException("이체 실패: 잔고 부족 또는 존재하지 않는 회원");
+        }
+        validation(receiverId);
+    }
+
+    private boolean applyTransfer(String senderId, String receiverId, int money) {
+        if (transferRepository != null) {
+            // 출금과 입금이 쿼리 하나로 처리되므로, 두 row가 모두 반영되었는지만 확인하면 됨
+            return transferRepository.transfer(senderId, receiverId, money) == 2;
+        }
+        // 보내는 회원 row에 잔고 조건을 걸어서 차감한 뒤 입금 (쿼리 2번)
+        return memberRepository.debitIfSufficient(senderId, money) == 1
+                && memberRepository.addMoney(receiverId, money) == 1;
+    }
+
+    private void validation(String receiverId) {
+        if (receiverId.equals("ex")) {
             throw new IllegalStateException("이체 작업 도중 예외 발생!");
         }
     }
@@ -0,0 +1,92 @@
+package hello.jdbc.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 낙관적 lock 이체가 충돌하면 Backoff 만큼 기다린 뒤 최대 maxAttempts번까지 다시 시도
+ *
+ * 재시도는 매번 새 트랜잭션에서 처음부터(조회부터) 다시 해야 하므로, @Transactional 프록시 바깥에서 MemberServiceV4를 호출함.
+ * 비관적 lock 등 다른 방식을 선택한 호출은 재시도 없이 그대로 한 번 실행
+ */
+@Slf4j
+public class OptimisticRetryTransferService {
+
+    // @Transactional이 적용된 프록시 객체를 넘겨받아야 함
+    private final MemberServiceV4 memberService;
+    private final int maxAttempts;
+    private final Backoff backoff;
+
+    private final LongAdder transfers = new LongAdder();
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    public OptimisticRetryTransferService(MemberServiceV4 memberService, int maxAttempts, Backoff backoff) {
+        this.memberService = memberService;
+        this.maxAttempts = maxAttempts;
+        this.backoff = backoff;
+    }
+
+    public void transfer(String senderId, String receiverId, int money) {
+        transfer(senderId, receiverId, money, TransferStrategy.OPTIMISTIC_LOCK);
+    }
+
+    public void transfer(String senderId, String receiverId, int money, TransferStrategy strategy) {
+        transfers.increment();
+
+        if (strategy != TransferStrategy.OPTIMISTIC_LOCK) {
+            attempts.increment();
+            memberService.transfer(senderId, receiverId, money, strategy);
+            return;
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            attempts.increment();
+            try {
+                memberService.transfer(senderId, receiverId, money, strategy);
+                return;
+            } catch (OptimisticLockingFailureException e) {
+                conflicts.increment();
+                if (attempt >= maxAttempts) {
+                    exhausted.increment();
+                    log.warn("이체 재시도 횟수 초과 sender={}, receiver={}, attempts={}", senderId, receiverId, attempt);
+                    throw e;
+                }
+
+                try {
+                    backoff.sleep(attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    public long getTransferCount() {
+        return transfers.sum();
+    }
+
+    public long getAttemptCount() {
+        return attempts.sum();
+    }
+
+    public long getConflictCount() {
+        return conflicts.sum();
+    }
+
+    // 재시도를 모두 소진해서 최종 실패한 이체 수
+    public long getExhaustedCount() {
+        return exhausted.sum();
+    }
+
+    // 전체 시도 중 충돌로 실패한 비율
+    public double getConflictRate() {
+        long attemptCount = attempts.sum();
+        return attemptCount == 0 ? 0.0 : (double) conflicts.sum() / attemptCount;
+    }
+
+}
@@ -0,0 +1,55 @@
+package hello.jdbc.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 재시도 예산 (token bucket)
+ *
+ * 호출마다 ratio만큼 토큰이 쌓이고(최대 maxTokens), 재시도할 때마다 토큰 1개를 사용함.
+ * 장기적으로 재시도 횟수가 전체 호출 수의 ratio 비율을 넘지 않으므로, DB 장애로 모든 호출이 실패할 때
+ * 재시도가 부하를 몇 배로 키우는(retry storm) 일을 막음. 처음에는 maxTokens개를 가지고 시작
+ */
+public class RetryBudget {
+
+    // 소수 단위 토큰을 정수로 계산하기 위한 배율
+    private static final long SCALE = 1000;
+
+    private final long depositPerCall;
+    private final long maxTokens;
+    private final AtomicLong tokens;
+
+    public RetryBudget(double ratio, int maxTokens) {
+        this.depositPerCall = Math.round(ratio * SCALE);
+        this.maxTokens = maxTokens * SCALE;
+        this.tokens = new AtomicLong(this.maxTokens);
+    }
+
+    // 재시도 제한 없음
+    public static RetryBudget unlimited() {
+        return new RetryBudget(1.0, Integer.MAX_VALUE);
+    }
+
+    public void deposit() {
+        tokens.accumulateAndGet(depositPerCall, (current, deposit) -> Math.min(current + deposit, maxTokens));
+    }
+
+    /**
+     * 토큰이 남아있으면 1개를 사용하고 true, 없으면 false
+     */
+    public boolean tryWithdraw() {
+        while (true) {
+            long current = tokens.get();
+            if (current < SCALE) {
+                return false;
+            }
+            if (tokens.compareAndSet(current, current - SCALE)) {
+                return true;
+            }
+        }
+    }
+
+    public double getTokens() {
+        return (double) tokens.get() / SCALE;
+    }
+
+}
@@ -0,0 +1,39 @@
+package hello.jdbc.service;
+
+import java.util.List;
+
+/**
+ * DB 트랜잭션을 시작하기 전에 JVM 안에서 먼저 보내는 회원/받는 회원의 lock을 잡고 MemberServiceV4.transfer()를 호출
+ *
+ * 같은 회원에 대한 이체가 몰리면 원래는 각 트랜잭션이 커넥션을 하나씩 점유한 채 DB의 row lock을 기다리게 되어 커넥션 풀이 고갈됨.
+ * 여기서 먼저 줄을 세우면 커넥션은 lock을 얻은 요청만 사용하므로, 나머지 커넥션은 겹치지 않는 이체가 쓸 수 있음.
+ * (같은 JVM 안의 요청끼리만 직렬화되므로, DB 쪽 정합성은 여전히 TransferStrategy로 보장해야 함)
+ */
+public class StripedLockTransferService {
+
+    // @Transactional이 적용된 프록시 객체를 넘겨받아야 함 (lock을 잡은 뒤에 트랜잭션이 시작되어야 하므로)
+    private final MemberServiceV4 memberService;
+    private final StripedLocks locks;
+
+    public StripedLockTransferService(MemberServiceV4 memberService, int stripes) {
+        this(memberService, new StripedLocks(stripes));
+    }
+
+    public StripedLockTransferService(MemberServiceV4 memberService, StripedLocks locks) {
+        this.memberService = memberService;
+        this.locks = locks;
+    }
+
+    public void transfer(String senderId, String receiverId, int money) {
+        locks.runLocked(List.of(senderId, receiverId), () -> memberService.transfer(senderId, receiverId, money));
+    }
+
+    public void transfer(String senderId, String receiverId, int money, TransferStrategy strategy) {
+        locks.runLocked(List.of(senderId, receiverId), () -> memberService.transfer(senderId, receiverId, money, strategy));
+    }
+
+    public StripedLocks getLocks() {
+        return locks;
+    }
+
+}
@@ -0,0 +1,81 @@
+package hello.jdbc.service;
+
+import hello.jdbc.metrics.LatencyHistogram;
+
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * memberId의 hash로 고정된 개수(stripes)의 lock 중 하나를 골라 쓰는 JVM 내부 lock
+ *
+ * 회원마다 lock 객체를 만들지 않으므로 메모리가 일정하고, 서로 다른 회원이 같은 lock을 공유할 수도 있음.
+ * 여러 회원의 lock은 항상 stripe 번호 순서대로 잡기 때문에 데드락이 생기지 않고, 같은 stripe는 한 번만 잡음
+ */
+public class StripedLocks {
+
+    private final ReentrantLock[] locks;
+    // lock을 얻기까지 기다린 시간
+    private final LatencyHistogram lockWait = new LatencyHistogram();
+
+    public StripedLocks(int stripes) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("stripes must be positive: " + stripes);
+        }
+        this.locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * keys에 해당하는 lock을 모두 잡은 상태에서 action을 실행
+     */
+    public <T> T callLocked(Collection<String> keys, Supplier<T> action) {
+        int[] stripes = keys.stream()
+                .mapToInt(this::stripeIndex)
+                .distinct()
+                .sorted()
+                .toArray();
+
+        long start = System.nanoTime();
+        int locked = 0;
+        try {
+            for (int stripe : stripes) {
+                locks[stripe].lock();
+                locked++;
+            }
+            lockWait.record(System.nanoTime() - start);
+
+            return action.get();
+        } finally {
+            // 잡은 lock만 역순으로 해제
+            for (int i = locked - 1; i >= 0; i--) {
+                locks[stripes[i]].unlock();
+            }
+        }
+    }
+
+    public void runLocked(Collection<String> keys, Runnable action) {
+        callLocked(keys, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public int getStripeCount() {
+        return locks.length;
+    }
+
+    public LatencyHistogram getLockWaitHistogram() {
+        return lockWait;
+    }
+
+    int stripeIndex(String key) {
+        int h = key.hashCode();
+        // 상위 비트를 섞어서 비슷한 문자열이 한 stripe로 몰리지 않도록 함
+        h ^= (h >>> 16);
+        return Math.floorMod(h, locks.length);
+    }
+
+}
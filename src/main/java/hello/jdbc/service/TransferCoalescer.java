@@ -0,0 +1,153 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.TransferRequest;
+import hello.jdbc.domain.TransferResult;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 여러 스레드에서 들어온 이체 요청을 모아서 트랜잭션 하나로 처리하는 앞단 (group commit)
+ *
+ * 첫 요청이 들어온 뒤 window 동안, 또는 maxBatchSize개가 찰 때까지 요청을 모은 다음
+ * MemberServiceV4.transferAll()로 한 번에 처리하고 각 요청자의 CompletableFuture를 완료시킴.
+ * 커밋 비용을 여러 건이 나눠서 부담하게 되고, 요청자 입장의 지연은 최대 window + 트랜잭션 처리 시간으로 제한됨
+ */
+@Slf4j
+public class TransferCoalescer implements AutoCloseable {
+
+    // @Transactional이 적용된 프록시 객체를 넘겨받아야 함
+    private final MemberServiceV4 memberService;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    // true면 모은 요청들을 회원별 순 변동액으로 합산해서 반영 (transferAllNetted)
+    private final boolean netting;
+
+    private final BlockingQueue<PendingTransfer> queue = new LinkedBlockingQueue<>();
+    private final Thread worker;
+    private volatile boolean running = true;
+    // running 확인과 queue.add()를 하나로 묶기 위한 lock. close() 이후에 큐에 들어가서 처리되지 않는 요청이 없도록 함
+    private final Object submitLock = new Object();
+
+    public TransferCoalescer(MemberServiceV4 memberService, Duration window, int maxBatchSize) {
+        this(memberService, window, maxBatchSize, false);
+    }
+
+    public TransferCoalescer(MemberServiceV4 memberService, Duration window, int maxBatchSize, boolean netting) {
+        this.memberService = memberService;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.netting = netting;
+
+        this.worker = new Thread(this::run, "transfer-coalescer");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public CompletableFuture<TransferResult> submit(String senderId, String receiverId, int money) {
+        PendingTransfer pending = new PendingTransfer(new TransferRequest(senderId, receiverId, money));
+        synchronized (submitLock) {
+            if (!running) {
+                pending.future.completeExceptionally(closedException());
+                return pending.future;
+            }
+            queue.add(pending);
+        }
+        return pending.future;
+    }
+
+    /**
+     * 더 이상 요청을 받지 않고, 이미 들어온 요청까지 처리한 뒤 종료
+     */
+    @Override
+    public void close() {
+        synchronized (submitLock) {
+            running = false;
+        }
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<PendingTransfer> batch = new ArrayList<>(maxBatchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingTransfer first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // 첫 요청 기준으로 window가 지나거나 maxBatchSize가 찰 때까지 모음
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingTransfer next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                flush(batch);
+            } catch (InterruptedException e) {
+                // 인터럽트되면 더 이상 poll()로 기다릴 수 없으므로 모으던 요청은 실패 처리하고 종료
+                Thread.currentThread().interrupt();
+                batch.forEach(pending -> pending.future.completeExceptionally(closedException()));
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+
+        // 인터럽트로 종료된 경우 처리하지 못한 요청들은 실패 처리
+        synchronized (submitLock) {
+            running = false;
+        }
+        PendingTransfer pending;
+        while ((pending = queue.poll()) != null) {
+            pending.future.completeExceptionally(closedException());
+        }
+    }
+
+    private void flush(List<PendingTransfer> batch) {
+        List<TransferRequest> requests = new ArrayList<>(batch.size());
+        batch.forEach(pending -> requests.add(pending.request));
+
+        try {
+            List<TransferResult> results = netting ? memberService.transferAllNetted(requests) : memberService.transferAll(requests);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(results.get(i));
+            }
+        } catch (Throwable e) {
+            // 커밋 실패 등 트랜잭션 전체가 실패한 경우. Error여도 요청자가 무한히 기다리지 않도록 모두 완료시킴
+            log.error("Group commit failed, size={}", batch.size(), e);
+            batch.forEach(pending -> pending.future.completeExceptionally(e));
+        }
+    }
+
+    private static IllegalStateException closedException() {
+        return new IllegalStateException("TransferCoalescer is closed");
+    }
+
+    private static class PendingTransfer {
+
+        private final TransferRequest request;
+        private final CompletableFuture<TransferResult> future = new CompletableFuture<>();
+
+        PendingTransfer(TransferRequest request) {
+            this.request = request;
+        }
+    }
+
+}
@@ -0,0 +1,31 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.TransferRequest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 여러 건의 이체를 회원별 순 변동액(net delta)으로 합산
+ * ex) A->B 100, B->A 40 => A: -60, B: +60
+ */
+final class TransferNetting {
+
+    private TransferNetting() {
+    }
+
+    /**
+     * memberId 순으로 정렬된 Map을 반환하므로, 이 순서대로 update 하면 항상 같은 순서로 row lock을 잡게 됨
+     * 순 변동액이 0인 회원도 포함함 (update 결과로 회원이 존재하는지 확인하기 위함)
+     */
+    static Map<String, Integer> netDeltas(List<TransferRequest> requests) {
+        Map<String, Integer> deltas = new TreeMap<>();
+        for (TransferRequest request : requests) {
+            deltas.merge(request.getSenderId(), -request.getMoney(), Integer::sum);
+            deltas.merge(request.getReceiverId(), request.getMoney(), Integer::sum);
+        }
+        return deltas;
+    }
+
+}
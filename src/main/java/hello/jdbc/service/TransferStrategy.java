@@ -0,0 +1,20 @@
+package hello.jdbc.service;
+
+/**
+ * 이체 시 DB에 반영하는 방식
+ */
+public enum TransferStrategy {
+
+    // 두 회원을 조회한 뒤 애플리케이션에서 계산한 잔고로 각각 update (조회 2번 + 수정 2번)
+    READ_MODIFY_WRITE,
+
+    // CASE 문을 사용한 update 쿼리 하나로 출금과 입금, 잔고 확인을 함께 처리 (1번, TransferRepository를 구현하지 않은 리포지토리는 2번)
+    SINGLE_STATEMENT,
+
+    // select ... for update 로 두 회원을 memberId 순서대로 lock 건 뒤 read-modify-write (데드락, 갱신 손실 없음)
+    PESSIMISTIC_LOCK,
+
+    // lock 없이 조회한 뒤, 조회 시점의 version이 그대로인 경우에만 update (충돌 시 OptimisticLockingFailureException)
+    OPTIMISTIC_LOCK
+
+}
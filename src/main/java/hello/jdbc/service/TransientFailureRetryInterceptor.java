@@ -0,0 +1,141 @@
+package hello.jdbc.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 일시적인 DB 오류로 실패한 호출을 트랜잭션째로 다시 실행하는 MethodInterceptor
+ *
+ * 재시도 대상(일시적인 오류)
+ * - TransientDataAccessException: 데드락 희생(DeadlockLoserDataAccessException), lock 대기 시간 초과(CannotAcquireLockException),
+ *   낙관적 lock 충돌, 쿼리 타임아웃 등
+ * - RecoverableDataAccessException, SQLTransientException, SQLRecoverableException: 커넥션을 새로 받으면 성공할 수 있는 오류
+ * - CannotCreateTransactionException: 트랜잭션 시작 시 커넥션 획득 실패 (커넥션 풀 타임아웃 등)
+ * - MyDbException처럼 SQLException을 감싼 예외는 MemberRepositoryV4_2와 같은 SQLErrorCodeSQLExceptionTranslator로 변환해서 판단
+ * 그 외의 예외(잔고 부족, 중복 키, 비즈니스 예외 등)는 다시 해도 같은 결과이므로 바로 던짐
+ *
+ * 재시도는 새 트랜잭션에서 처음부터 다시 해야 하므로 @Transactional 프록시 바깥에 적용해야 함
+ *   ProxyFactory proxyFactory = new ProxyFactory(memberServiceV4); // @Transactional 프록시
+ *   proxyFactory.setProxyTargetClass(true);
+ *   proxyFactory.addAdvice(new TransientFailureRetryInterceptor(dataSource, 3, backoff, budget));
+ * 이미 진행 중인 트랜잭션에 참여한 호출은 바깥 트랜잭션이 rollback-only가 되므로 재시도하지 않음
+ */
+@Slf4j
+public class TransientFailureRetryInterceptor implements MethodInterceptor {
+
+    private final SQLExceptionTranslator exceptionTranslator;
+    private final int maxAttempts;
+    private final Backoff backoff;
+    private final RetryBudget retryBudget;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+    private final LongAdder budgetRejected = new LongAdder();
+
+    public TransientFailureRetryInterceptor(DataSource dataSource, int maxAttempts, Backoff backoff, RetryBudget retryBudget) {
+        this.exceptionTranslator = new SQLErrorCodeSQLExceptionTranslator(dataSource);
+        this.maxAttempts = maxAttempts;
+        this.backoff = backoff;
+        this.retryBudget = retryBudget;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        calls.increment();
+        retryBudget.deposit();
+
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return invocation.proceed();
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            // proceed()는 한 번만 호출할 수 있으므로 시도마다 복사본으로 실행
+            MethodInvocation copy = ((ProxyMethodInvocation) invocation).invocableClone();
+            try {
+                return copy.proceed();
+            } catch (Throwable e) {
+                if (!isTransient(e)) {
+                    throw e;
+                }
+                if (attempt >= maxAttempts) {
+                    exhausted.increment();
+                    log.warn("재시도 횟수 초과 method={}, attempts={}", invocation.getMethod().getName(), attempt, e);
+                    throw e;
+                }
+                if (!retryBudget.tryWithdraw()) {
+                    budgetRejected.increment();
+                    log.warn("재시도 예산 소진 method={}, attempts={}", invocation.getMethod().getName(), attempt, e);
+                    throw e;
+                }
+
+                retries.increment();
+                log.info("일시적인 DB 오류로 재시도 method={}, attempt={}, cause={}", invocation.getMethod().getName(), attempt, e.toString());
+                try {
+                    backoff.sleep(attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * 다시 실행하면 성공할 수 있는 오류인지 판단 (cause를 따라가며 확인)
+     */
+    public boolean isTransient(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+            if (cause instanceof TransientDataAccessException || cause instanceof RecoverableDataAccessException
+                    || cause instanceof SQLTransientException || cause instanceof SQLRecoverableException) {
+                return true;
+            }
+            if (cause instanceof CannotCreateTransactionException) {
+                return true;
+            }
+            if (cause instanceof DataAccessException) {
+                // 이미 변환된 예외는 종류로 판단이 끝남
+                return false;
+            }
+            if (cause instanceof SQLException) {
+                DataAccessException translated = exceptionTranslator.translate("retry", null, (SQLException) cause);
+                return translated instanceof TransientDataAccessException || translated instanceof RecoverableDataAccessException;
+            }
+        }
+        return false;
+    }
+
+    public long getCallCount() {
+        return calls.sum();
+    }
+
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    // maxAttempts번 모두 실패한 호출 수
+    public long getExhaustedCount() {
+        return exhausted.sum();
+    }
+
+    // 재시도 예산이 없어서 재시도하지 못한 호출 수
+    public long getBudgetRejectedCount() {
+        return budgetRejected.sum();
+    }
+
+}
@@ -0,0 +1,22 @@
+package hello.jdbc.transaction;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+
+/**
+ * 세이브포인트 생성/롤백도 통지받는 TransactionSynchronization
+ *
+ * 스프링은 세이브포인트에 대한 콜백을 제공하지 않으므로, 트랜잭션 범위의 상태를 가진 데코레이터
+ * (IdentityMapMemberRepository, UnitOfWorkMemberRepository)는 이 인터페이스로 등록하고,
+ * 세이브포인트는 TransactionStatus 대신 Savepoints를 통해 만들고 되돌려야 함
+ */
+public interface SavepointSynchronization extends TransactionSynchronization {
+
+    // 세이브포인트를 만들기 직전
+    default void beforeSavepoint() {
+    }
+
+    // 세이브포인트로 되돌린 직후. 세이브포인트 이후에 쌓인 상태는 더 이상 DB와 맞지 않음
+    default void afterRollbackToSavepoint() {
+    }
+
+}
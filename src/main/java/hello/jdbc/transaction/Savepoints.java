@@ -0,0 +1,43 @@
+package hello.jdbc.transaction;
+
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Consumer;
+
+/**
+ * 세이브포인트를 만들고 되돌리면서 현재 트랜잭션의 SavepointSynchronization에 통지하는 도우미
+ *
+ *   Object savepoint = Savepoints.create(status);
+ *   ...
+ *   Savepoints.rollbackTo(status, savepoint);
+ *   status.releaseSavepoint(savepoint);
+ */
+public final class Savepoints {
+
+    private Savepoints() {
+    }
+
+    public static Object create(TransactionStatus status) {
+        forEachSynchronization(SavepointSynchronization::beforeSavepoint);
+        return status.createSavepoint();
+    }
+
+    public static void rollbackTo(TransactionStatus status, Object savepoint) {
+        status.rollbackToSavepoint(savepoint);
+        forEachSynchronization(SavepointSynchronization::afterRollbackToSavepoint);
+    }
+
+    private static void forEachSynchronization(Consumer<SavepointSynchronization> callback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof SavepointSynchronization) {
+                callback.accept((SavepointSynchronization) synchronization);
+            }
+        }
+    }
+
+}
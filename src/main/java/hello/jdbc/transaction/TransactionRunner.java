@@ -0,0 +1,185 @@
+package hello.jdbc.transaction;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.ConnectionHolder;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * 프록시(AOP) 없이 코드로 트랜잭션을 실행하는 가벼운 도우미
+ *
+ *   transactionRunner.runWithoutResult(con -> bizLogic(...));
+ *
+ * MemberServiceV2처럼 커넥션을 직접 열고 커밋/롤백하지만, 커넥션을 ConnectionHolder로 TransactionSynchronizationManager에 등록하므로
+ * DataSourceUtils.getConnection()을 사용하는 리포지토리(V3, V4_1, V4_2, V5)가 파라미터로 넘겨받지 않아도 같은 커넥션을 사용함.
+ * @Transactional 프록시나 TransactionTemplate과 달리 트랜잭션 속성(TransactionDefinition) 조회, 인터셉터 체인, TransactionStatus 생성을 하지 않음
+ *
+ * - 이미 같은 DataSource의 트랜잭션이 진행 중이면 그 트랜잭션에 참여 (커밋/롤백은 바깥 트랜잭션이 함)
+ *   트랜잭션 없이 동기화만 된 커넥션(SUPPORTS 전파 등, 오토 커밋 상태)에는 참여하지 않고, 잠시 풀어둔 뒤 새 트랜잭션을 시작함
+ * - 새로 시작한 트랜잭션은 TransactionSynchronizationManager.isActualTransactionActive()에도 표시함
+ * - 콜백에서 예외가 발생하면 롤백. SQLException은 MemberRepositoryV4_2와 같은 SQLErrorCodeSQLExceptionTranslator로 스프링 예외로 변환
+ * - synchronization = true이면 트랜잭션 동기화(TransactionSynchronization)도 시작해서
+ *   트랜잭션 범위의 리소스를 사용하는 데코레이터(IdentityMapMemberRepository, UnitOfWorkMemberRepository)도 동작함
+ * 전파 속성, 격리 수준, 타임아웃 등이 필요하면 TransactionTemplate이나 @Transactional을 사용
+ */
+@Slf4j
+public class TransactionRunner {
+
+    private final DataSource dataSource;
+    private final boolean synchronization;
+    private final SQLExceptionTranslator exceptionTranslator;
+
+    public TransactionRunner(DataSource dataSource) {
+        this(dataSource, false);
+    }
+
+    public TransactionRunner(DataSource dataSource, boolean synchronization) {
+        this.dataSource = dataSource;
+        this.synchronization = synchronization;
+        this.exceptionTranslator = new SQLErrorCodeSQLExceptionTranslator(dataSource);
+    }
+
+    @FunctionalInterface
+    public interface TransactionCallback<T> {
+        T doInTransaction(Connection con) throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface TransactionAction {
+        void doInTransaction(Connection con) throws SQLException;
+    }
+
+    public void runWithoutResult(TransactionAction action) {
+        run(con -> {
+            action.doInTransaction(con);
+            return null;
+        });
+    }
+
+    public <T> T run(TransactionCallback<T> action) {
+        ConnectionHolder existing = (ConnectionHolder) TransactionSynchronizationManager.getResource(dataSource);
+        if (existing != null && existing.isSynchronizedWithTransaction() && TransactionSynchronizationManager.isActualTransactionActive()) {
+            // 진행 중인 트랜잭션에 참여
+            try {
+                return action.doInTransaction(existing.getConnection());
+            } catch (SQLException e) {
+                throw exceptionTranslator.translate("TransactionRunner", null, e);
+            }
+        }
+
+        Connection con = getConnection();
+        boolean restoreAutoCommit = false;
+        ConnectionHolder holder = new ConnectionHolder(con);
+        holder.setSynchronizedWithTransaction(true);
+        boolean newSynchronization = synchronization && !TransactionSynchronizationManager.isSynchronizationActive();
+        boolean wasActualTransactionActive = TransactionSynchronizationManager.isActualTransactionActive();
+        // 트랜잭션이 아닌 커넥션이 바인딩되어 있으면 끝날 때까지 풀어둠
+        Object suspended = existing != null ? TransactionSynchronizationManager.unbindResource(dataSource) : null;
+
+        try {
+            // 오토 커밋 변경은 드라이버에 따라 DB 왕복이 생기므로 필요할 때만
+            if (con.getAutoCommit()) {
+                con.setAutoCommit(false); // 트랜잭션 시작
+                restoreAutoCommit = true;
+            }
+            TransactionSynchronizationManager.bindResource(dataSource, holder);
+            TransactionSynchronizationManager.setActualTransactionActive(true);
+            if (newSynchronization) {
+                TransactionSynchronizationManager.initSynchronization();
+            }
+
+            T result;
+            boolean beforeCompletionInvoked = false;
+            try {
+                result = action.doInTransaction(con);
+                if (newSynchronization) {
+                    TransactionSynchronizationUtils.triggerBeforeCommit(false);
+                    TransactionSynchronizationUtils.triggerBeforeCompletion();
+                    beforeCompletionInvoked = true;
+                }
+                con.commit(); // 정상 -> 커밋
+            } catch (SQLException e) {
+                rollback(con, e, newSynchronization, beforeCompletionInvoked);
+                throw exceptionTranslator.translate("TransactionRunner", null, e);
+            } catch (RuntimeException | Error e) {
+                rollback(con, e, newSynchronization, beforeCompletionInvoked);
+                throw e;
+            }
+
+            if (newSynchronization) {
+                // afterCommit()에서 예외가 발생해도 afterCompletion()은 호출해야 데코레이터가 바인딩한 리소스가 스레드에 남지 않음
+                try {
+                    TransactionSynchronizationUtils.invokeAfterCommit(TransactionSynchronizationManager.getSynchronizations());
+                } finally {
+                    completeSynchronization(TransactionSynchronization.STATUS_COMMITTED);
+                }
+            }
+            return result;
+        } catch (SQLException e) {
+            // setAutoCommit 실패
+            throw exceptionTranslator.translate("TransactionRunner", null, e);
+        } finally {
+            if (newSynchronization && TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+            TransactionSynchronizationManager.unbindResourceIfPossible(dataSource);
+            TransactionSynchronizationManager.setActualTransactionActive(wasActualTransactionActive);
+            if (suspended != null) {
+                TransactionSynchronizationManager.bindResource(dataSource, suspended);
+            }
+            holder.clear();
+            release(con, restoreAutoCommit);
+        }
+    }
+
+    private Connection getConnection() {
+        try {
+            return dataSource.getConnection();
+        } catch (SQLException e) {
+            throw new TransactionSystemException("Could not open JDBC Connection for transaction", e);
+        }
+    }
+
+    private void rollback(Connection con, Throwable cause, boolean newSynchronization, boolean beforeCompletionInvoked) {
+        if (newSynchronization && !beforeCompletionInvoked) {
+            TransactionSynchronizationUtils.triggerBeforeCompletion();
+        }
+        try {
+            con.rollback(); // 예외 발생 -> 롤백
+        } catch (SQLException e) {
+            log.error("rollback error", e);
+            cause.addSuppressed(e);
+        }
+        if (newSynchronization) {
+            completeSynchronization(TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+    }
+
+    private void completeSynchronization(int status) {
+        // afterCompletion()에서 다시 등록하는 경우에 대비해서 목록을 먼저 비운 뒤 호출
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationUtils.invokeAfterCompletion(synchronizations, status);
+    }
+
+    private void release(Connection con, boolean restoreAutoCommit) {
+        try {
+            if (restoreAutoCommit) {
+                con.setAutoCommit(true); // 커넥션 풀 고려
+            }
+            con.close();
+        } catch (SQLException e) {
+            log.error("error", e);
+        }
+    }
+
+}
@@ -0,0 +1,16 @@
+-- 기존 member 테이블(member_id, money)을 지금의 리포지토리가 사용하는 형태로 바꾸는 스크립트 (H2)
+-- 기존 데이터는 그대로 유지하고, 이미 적용된 부분은 건너뛰므로 여러 번 실행해도 됨
+-- 벤치마크용 in-memory DB는 테이블을 새로 만드는 src/jmh/resources/schema.sql을 사용
+
+-- version: 낙관적 락을 위한 컬럼. MemberRepository 구현체들의 모든 수정 쿼리에서 1씩 증가시킴
+alter table member add column if not exists version bigint not null default 0;
+
+-- member_sub_balance: 입금이 몰리는 회원(hot account)의 잔고를 slot개의 row로 나누어 저장 (ShardedHotAccountMemberRepository)
+-- 실제 잔고 = member.money + sum(member_sub_balance.money)
+create table if not exists member_sub_balance (
+    member_id varchar(10),
+    slot integer not null,
+    money integer not null default 0,
+    version bigint not null default 0,
+    primary key (member_id, slot)
+);
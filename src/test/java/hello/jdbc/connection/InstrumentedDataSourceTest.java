@@ -0,0 +1,121 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.time.Duration;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class InstrumentedDataSourceTest {
+
+    private HikariDataSource hikariDataSource;
+    private InstrumentedDataSource dataSource;
+    private MemberRepositoryV5 repository;
+    private final Member member = new Member("memInst", 10000);
+
+    @BeforeEach
+    void beforeEach() {
+        hikariDataSource = new HikariDataSource();
+        hikariDataSource.setJdbcUrl(URL);
+        hikariDataSource.setUsername(USERNAME);
+        hikariDataSource.setPassword(PASSWORD);
+        hikariDataSource.setMaximumPoolSize(2);
+
+        dataSource = new InstrumentedDataSource(hikariDataSource, Duration.ofMillis(100), true);
+        repository = new MemberRepositoryV5(dataSource);
+        repository.save(member);
+    }
+
+    @AfterEach
+    void afterEach() {
+        repository.delete(member.getMemberId());
+        dataSource.close();
+        hikariDataSource.close();
+    }
+
+    @Test
+    @DisplayName("커넥션을 획득한 리포지토리 메서드별로 획득/보유 시간 기록")
+    void recordPerCaller() {
+        for (int i = 0; i < 10; i++) {
+            repository.findById(member.getMemberId());
+        }
+
+        assertThat(dataSource.getCallerStats()).containsKeys("MemberRepositoryV5.save", "MemberRepositoryV5.findById");
+        assertThat(dataSource.getCallerStats().get("MemberRepositoryV5.findById").getHoldHistogram().getCount()).isEqualTo(10);
+        assertThat(dataSource.getActiveConnections()).isZero();
+        assertThat(dataSource.getPoolIdleConnections()).isGreaterThan(0);
+        log.info("{}", dataSource);
+        dataSource.getCallerStats().forEach((caller, stats) -> log.info("{} {}", caller, stats));
+    }
+
+    @Test
+    @DisplayName("trackCallers가 꺼져 있으면 전체 획득/보유 시간만 기록")
+    void callersNotTracked() {
+        InstrumentedDataSource untracked = new InstrumentedDataSource(hikariDataSource);
+        new MemberRepositoryV5(untracked).findById(member.getMemberId());
+
+        assertThat(untracked.getHoldHistogram().getCount()).isEqualTo(1);
+        assertThat(untracked.getCallerStats()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("트랜잭션 커넥션은 트랜잭션을 시작한 곳 기준으로 한 번만 기록")
+    void transactionHold() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        long acquiredBefore = dataSource.getAcquireHistogram().getCount();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            repository.update(member.getMemberId(), 20000);
+            repository.findById(member.getMemberId());
+        });
+
+        assertThat(dataSource.getAcquireHistogram().getCount()).isEqualTo(acquiredBefore + 1);
+        assertThat(dataSource.getCallerStats()).containsKey("InstrumentedDataSourceTest.transactionHold");
+        assertThat(dataSource.getCallerStats()).doesNotContainKey("MemberRepositoryV5.update");
+    }
+
+    @Test
+    @DisplayName("username, password를 지정해서 획득한 커넥션도 기록")
+    void recordWithCredentials() throws Exception {
+        // HikariDataSource는 getConnection(username, password)를 지원하지 않으므로 DriverManagerDataSource 사용
+        try (InstrumentedDataSource credentialDataSource = new InstrumentedDataSource(new DriverManagerDataSource(URL), Duration.ofMillis(100))) {
+            try (Connection con = credentialDataSource.getConnection(USERNAME, PASSWORD)) {
+                assertThat(con.isValid(1)).isTrue();
+                assertThat(credentialDataSource.getActiveConnections()).isEqualTo(1);
+            }
+
+            assertThat(credentialDataSource.getAcquireHistogram().getCount()).isEqualTo(1);
+            assertThat(credentialDataSource.getHoldHistogram().getCount()).isEqualTo(1);
+            assertThat(credentialDataSource.getActiveConnections()).isZero();
+        }
+    }
+
+    @Test
+    @DisplayName("leakThreshold보다 오래 보유한 커넥션 감지")
+    void detectLeak() throws Exception {
+        try (Connection con = dataSource.getConnection()) {
+            Thread.sleep(300);
+            assertThat(con.isClosed()).isFalse();
+            dataSource.detectLeaks();
+            assertThat(dataSource.getLeakCount()).isEqualTo(1);
+        }
+
+        dataSource.detectLeaks();
+        assertThat(dataSource.getLeakCount()).isEqualTo(1);
+        assertThat(dataSource.getActiveConnections()).isZero();
+    }
+
+}
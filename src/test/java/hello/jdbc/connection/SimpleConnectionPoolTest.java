@@ -0,0 +1,98 @@
+package hello.jdbc.connection;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV0;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SimpleConnectionPoolTest {
+
+    private SimpleConnectionPool pool;
+    private final MemberRepositoryV0 repository = new MemberRepositoryV0();
+    private final Member member = new Member("memPool", 10000);
+
+    @BeforeEach
+    void beforeEach() {
+        pool = new SimpleConnectionPool(URL, USERNAME, PASSWORD, 2, 1, Duration.ofMillis(200), Duration.ofSeconds(1));
+    }
+
+    @AfterEach
+    void afterEach() throws SQLException {
+        DBConnectionUtil.useDataSource(pool);
+        repository.delete(member.getMemberId());
+        DBConnectionUtil.useDataSource(null);
+        pool.close();
+    }
+
+    @Test
+    @DisplayName("반납한 물리 커넥션을 다시 빌려줌")
+    void reuseConnection() throws SQLException {
+        assertThat(pool.getTotalConnections()).isEqualTo(1); // warm-up
+
+        Connection first = pool.getConnection();
+        Connection physical = first.unwrap(Connection.class);
+        first.close();
+        assertThat(first.isClosed()).isTrue();
+
+        try (Connection second = pool.getConnection()) {
+            assertThat(second).isNotSameAs(first);
+            assertThat(second.unwrap(Connection.class)).isSameAs(physical);
+        }
+        assertThat(pool.getTotalConnections()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("최대 개수를 모두 빌려간 상태면 acquireTimeout 후 예외")
+    void acquireTimeout() throws SQLException {
+        try (Connection con1 = pool.getConnection(); Connection con2 = pool.getConnection()) {
+            assertThat(con1.unwrap(Connection.class)).isNotSameAs(con2.unwrap(Connection.class));
+            assertThat(pool.getActiveConnections()).isEqualTo(2);
+            assertThrows(SQLTransientConnectionException.class, () -> pool.getConnection());
+        }
+        assertThat(pool.getActiveConnections()).isZero();
+        assertThat(pool.getIdleConnections()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("끊어진 커넥션은 빌려줄 때 확인해서 버림")
+    void validateOnBorrow() throws Exception {
+        Connection broken = pool.getConnection();
+        Connection physical = broken.unwrap(Connection.class);
+        physical.close();
+        broken.close();
+
+        // 최근 사용된 커넥션은 확인을 생략하므로 잠시 기다림
+        Thread.sleep(600);
+
+        try (Connection con = pool.getConnection()) {
+            assertThat(con.unwrap(Connection.class)).isNotSameAs(physical);
+            assertThat(con.isValid(1)).isTrue();
+        }
+    }
+
+    @Test
+    @DisplayName("idleTimeout보다 오래 쉰 커넥션은 warm-up 개수만 남기고 닫음")
+    void evictIdleConnections() throws Exception {
+        Connection con1 = pool.getConnection();
+        Connection con2 = pool.getConnection();
+        con1.close();
+        con2.close();
+        assertThat(pool.getTotalConnections()).isEqualTo(2);
+
+        Thread.sleep(2500);
+
+        assertThat(pool.getTotalConnections()).isEqualTo(1);
+    }
+
+}
@@ -0,0 +1,123 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CachingMemberRepositoryTest {
+
+    MemberRepositoryV5 memberRepository;
+    CachingMemberRepository cachingRepository;
+    TransactionTemplate transactionTemplate;
+    Member member = new Member("memCache", 10000);
+
+    @BeforeEach
+    void beforeEach() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        memberRepository = new MemberRepositoryV5(dataSource);
+        cachingRepository = new CachingMemberRepository(memberRepository, 100);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        memberRepository.save(member);
+    }
+
+    @AfterEach
+    void afterEach() {
+        memberRepository.delete(member.getMemberId());
+    }
+
+    @Test
+    @DisplayName("두 번째 조회부터는 캐시에서 반환")
+    void findById() {
+        cachingRepository.findById(member.getMemberId());
+        Member foundMember = cachingRepository.findById(member.getMemberId());
+
+        assertThat(foundMember).isEqualTo(member);
+        assertThat(cachingRepository.getHitCount()).isEqualTo(1);
+        assertThat(cachingRepository.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("수정 시 캐시에서 제거")
+    void update() {
+        cachingRepository.findById(member.getMemberId());
+        cachingRepository.update(member.getMemberId(), 20000);
+
+        assertThat(cachingRepository.findById(member.getMemberId()).getMoney()).isEqualTo(20000);
+    }
+
+    @Test
+    @DisplayName("롤백된 수정 내용은 캐시에 남지 않음")
+    void rollback() {
+        cachingRepository.findById(member.getMemberId());
+
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            cachingRepository.update(member.getMemberId(), 0);
+            // 트랜잭션 안에서는 수정된 값을 DB에서 조회하지만 캐시에는 넣지 않음
+            assertThat(cachingRepository.findById(member.getMemberId()).getMoney()).isEqualTo(0);
+            throw new IllegalStateException("롤백");
+        }));
+
+        assertThat(cachingRepository.findById(member.getMemberId()).getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    @DisplayName("조회 도중 다른 회원이 수정되어도 조회 결과는 캐시에 넣음")
+    void loadWhileOtherMemberUpdated() {
+        Member other = new Member("memCache2", 10000);
+        memberRepository.save(other);
+        try {
+            // member를 DB에서 조회하는 사이에 다른 스레드가 other를 수정하는 상황
+            CachingMemberRepository repository = new CachingMemberRepository(updatingWhileLoading(other.getMemberId()), 100);
+            cachingRepository = repository;
+
+            repository.findById(member.getMemberId());
+            repository.findById(member.getMemberId());
+
+            assertThat(repository.getHitCount()).isEqualTo(1);
+        } finally {
+            memberRepository.delete(other.getMemberId());
+        }
+    }
+
+    @Test
+    @DisplayName("조회 도중 같은 회원이 수정되면 조회해온 값은 캐시에 넣지 않음")
+    void loadWhileSameMemberUpdated() {
+        CachingMemberRepository repository = new CachingMemberRepository(updatingWhileLoading(member.getMemberId()), 100);
+        cachingRepository = repository;
+
+        repository.findById(member.getMemberId());
+        Member foundMember = repository.findById(member.getMemberId());
+
+        assertThat(repository.getHitCount()).isEqualTo(0);
+        assertThat(foundMember.getMoney()).isEqualTo(20000);
+    }
+
+    // 첫 번째 findById 도중에 cachingRepository를 통해 updatedId 회원의 잔고를 20000으로 수정하는 리포지토리
+    private MemberRepository updatingWhileLoading(String updatedId) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        return new MemberRepositoryV5(dataSource) {
+            private boolean updated;
+
+            @Override
+            public Member findById(String memberId) {
+                Member found = super.findById(memberId);
+                if (!updated) {
+                    updated = true;
+                    cachingRepository.update(updatedId, 20000);
+                }
+                return found;
+            }
+        };
+    }
+
+}
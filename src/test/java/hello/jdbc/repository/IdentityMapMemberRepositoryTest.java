@@ -0,0 +1,123 @@
+package hello.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.metrics.StatementMetrics;
+import hello.jdbc.transaction.Savepoints;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class IdentityMapMemberRepositoryTest {
+
+    public static final String MEMBER_A = "idMapA";
+
+    HikariDataSource dataSource;
+    StatementMetrics metrics;
+    IdentityMapMemberRepository repository;
+    TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+
+        // delegate가 실제로 호출된 횟수(DB 조회 횟수)를 확인하기 위해 MeteredMemberRepository를 사이에 둠
+        metrics = new StatementMetrics();
+        repository = new IdentityMapMemberRepository(new MeteredMemberRepository(new MemberRepositoryV5(dataSource), metrics));
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        repository.save(new Member(MEMBER_A, 10000));
+    }
+
+    @AfterEach
+    void afterEach() {
+        repository.delete(MEMBER_A);
+        dataSource.close();
+    }
+
+    @Test
+    @DisplayName("트랜잭션 안에서 같은 회원을 다시 조회하면 DB에 가지 않고 같은 객체를 반환")
+    void sameInstanceWithinTransaction() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Member first = repository.findById(MEMBER_A);
+            Member second = repository.findById(MEMBER_A);
+            assertThat(second).isSameAs(first);
+        });
+
+        assertThat(findByIdQueries()).isEqualTo(1);
+        assertThat(repository.getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("update() 후에는 반영된 값과 version을 DB 조회 없이 반환")
+    void updateRefreshesIdentityMap() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Member before = repository.findById(MEMBER_A);
+            repository.update(MEMBER_A, 7000);
+
+            Member after = repository.findById(MEMBER_A);
+            assertThat(after.getMoney()).isEqualTo(7000);
+            assertThat(after.getVersion()).isEqualTo(before.getVersion() + 1);
+        });
+
+        assertThat(findByIdQueries()).isEqualTo(1);
+        assertThat(new MemberRepositoryV5(dataSource).findById(MEMBER_A).getVersion())
+                .isEqualTo(repository.findById(MEMBER_A).getVersion());
+    }
+
+    @Test
+    @DisplayName("DB에서 계산하는 쓰기 작업 후에는 다시 조회")
+    void sqlWriteEvicts() {
+        transactionTemplate.executeWithoutResult(status -> {
+            repository.findById(MEMBER_A);
+            repository.addMoney(MEMBER_A, 500);
+            assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(10500);
+        });
+
+        assertThat(findByIdQueries()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("세이브포인트로 되돌리면 되돌린 update() 결과 대신 DB 값을 다시 조회")
+    void clearedOnRollbackToSavepoint() {
+        transactionTemplate.executeWithoutResult(status -> {
+            repository.findById(MEMBER_A);
+            Object savepoint = Savepoints.create(status);
+            repository.update(MEMBER_A, 7000);
+
+            Savepoints.rollbackTo(status, savepoint);
+            status.releaseSavepoint(savepoint);
+            assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+        });
+
+        assertThat(findByIdQueries()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("트랜잭션이 끝나면 비우고, 트랜잭션 밖에서는 매번 조회")
+    void clearedAfterCompletion() {
+        transactionTemplate.executeWithoutResult(status -> repository.findById(MEMBER_A));
+        transactionTemplate.executeWithoutResult(status -> repository.findById(MEMBER_A));
+        repository.findById(MEMBER_A);
+        repository.findById(MEMBER_A);
+
+        assertThat(findByIdQueries()).isEqualTo(4);
+        assertThat(repository.getHitCount()).isZero();
+    }
+
+    private long findByIdQueries() {
+        return metrics.getOperations().get("findById").getCalls();
+    }
+
+}
@@ -0,0 +1,129 @@
+package hello.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MemberRepositoryBatchTest {
+
+    private static final int ROWS = 2000;
+
+    private HikariDataSource dataSource;
+    private MemberRepositoryV5 repositoryV5;
+    private MemberRepositoryV4_2 repositoryV4_2;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+
+        repositoryV5 = new MemberRepositoryV5(dataSource, 500);
+        repositoryV4_2 = new MemberRepositoryV4_2(dataSource, 500);
+    }
+
+    @AfterEach
+    void afterEach() {
+        new JdbcTemplate(dataSource).update("delete from member where member_id like 'bt%'");
+        dataSource.close();
+    }
+
+    @Test
+    @DisplayName("JdbcTemplate 배치 저장 및 수정")
+    void saveAllAndUpdateAllV5() {
+        List<Member> members = members("btV5_", ROWS);
+        repositoryV5.saveAll(members);
+
+        Map<String, Integer> moneyByMemberId = new LinkedHashMap<>();
+        members.forEach(member -> moneyByMemberId.put(member.getMemberId(), member.getMoney() + 1));
+        repositoryV5.updateAll(moneyByMemberId);
+
+        assertThat(repositoryV5.findById("btV5_0").getMoney()).isEqualTo(1);
+        assertThat(repositoryV5.findById("btV5_" + (ROWS - 1)).getMoney()).isEqualTo(ROWS);
+    }
+
+    @Test
+    @DisplayName("addBatch/executeBatch 배치 저장 및 수정")
+    void saveAllAndUpdateAllV4_2() {
+        // batchSize(500)로 나누어 떨어지지 않는 개수로 남은 배치까지 전송되는지 확인
+        List<Member> members = members("btV4_", ROWS + 7);
+        repositoryV4_2.saveAll(members);
+
+        Map<String, Integer> moneyByMemberId = new LinkedHashMap<>();
+        members.forEach(member -> moneyByMemberId.put(member.getMemberId(), member.getMoney() + 1));
+        repositoryV4_2.updateAll(moneyByMemberId);
+
+        assertThat(repositoryV4_2.findById("btV4_0").getMoney()).isEqualTo(1);
+        assertThat(repositoryV4_2.findById("btV4_" + (ROWS + 6)).getMoney()).isEqualTo(ROWS + 7);
+    }
+
+    @Test
+    @DisplayName("batchSize가 1보다 작으면 생성 시점에 예외")
+    void invalidBatchSize() {
+        assertThrows(IllegalArgumentException.class, () -> new MemberRepositoryV4_1(dataSource, 0));
+        assertThrows(IllegalArgumentException.class, () -> new MemberRepositoryV4_2(dataSource, 0));
+        assertThrows(IllegalArgumentException.class, () -> new MemberRepositoryV5(dataSource, -1));
+    }
+
+    @Test
+    @DisplayName("IN 청크 단위 다건 조회")
+    void findAllByIds() {
+        // 청크 최대 크기(128)를 넘고, 2의 거듭제곱이 아닌 개수로 패딩까지 확인
+        List<Member> members = members("btIn_", 300);
+        repositoryV5.saveAll(members);
+
+        List<String> ids = new ArrayList<>();
+        members.forEach(member -> ids.add(member.getMemberId()));
+        ids.add("btIn_none");
+
+        Map<String, Member> foundByV5 = repositoryV5.findAllByIds(ids);
+        Map<String, Member> foundByV4_2 = repositoryV4_2.findAllByIds(ids);
+
+        assertThat(foundByV5).hasSize(300).doesNotContainKey("btIn_none");
+        assertThat(foundByV4_2).isEqualTo(foundByV5);
+        assertThat(foundByV5.get("btIn_299").getMoney()).isEqualTo(299);
+    }
+
+    @Test
+    @DisplayName("member 테이블 스트리밍 조회")
+    void forEachMember() {
+        repositoryV5.saveAll(members("btScan_", 300));
+
+        AtomicInteger count = new AtomicInteger();
+        AtomicLong sum = new AtomicLong();
+        repositoryV5.forEachMember(50, true, member -> {
+            if (member.getMemberId().startsWith("btScan_")) {
+                count.incrementAndGet();
+                sum.addAndGet(member.getMoney());
+            }
+        });
+
+        assertThat(count.get()).isEqualTo(300);
+        assertThat(sum.get()).isEqualTo(299 * 300 / 2);
+    }
+
+    private List<Member> members(String prefix, int count) {
+        List<Member> members = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            members.add(new Member(prefix + i, i));
+        }
+        return members;
+    }
+
+}
@@ -0,0 +1,48 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemberRepositoryV5Test {
+
+    MemberRepositoryV5 repository;
+    Member member = new Member("memberV5", 10000);
+
+    @BeforeEach
+    void beforeEach() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        repository = new MemberRepositoryV5(dataSource);
+        repository.save(member);
+    }
+
+    @AfterEach
+    void afterEach() {
+        repository.delete(member.getMemberId());
+    }
+
+    @Test
+    void addMoney() {
+        assertThat(repository.addMoney(member.getMemberId(), 500)).isEqualTo(1);
+        assertThat(repository.addMoney(member.getMemberId(), -2000)).isEqualTo(1);
+        assertThat(repository.findById(member.getMemberId()).getMoney()).isEqualTo(8500);
+
+        // 존재하지 않는 회원은 반영된 row가 없음
+        assertThat(repository.addMoney("none", 500)).isEqualTo(0);
+    }
+
+    @Test
+    void debitIfSufficient() {
+        assertThat(repository.debitIfSufficient(member.getMemberId(), 10000)).isEqualTo(1);
+
+        // 잔고 부족 -> 차감되지 않음
+        assertThat(repository.debitIfSufficient(member.getMemberId(), 1)).isEqualTo(0);
+        assertThat(repository.findById(member.getMemberId()).getMoney()).isEqualTo(0);
+    }
+
+}
@@ -0,0 +1,112 @@
+package hello.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.StatementMetricsDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.metrics.OperationStats;
+import hello.jdbc.metrics.StatementMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import java.lang.management.ManagementFactory;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@Slf4j
+class MeteredMemberRepositoryTest {
+
+    HikariDataSource dataSource;
+    StatementMetrics metrics;
+    Member member = new Member("memMeter", 10000);
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        metrics = new StatementMetrics();
+    }
+
+    @AfterEach
+    void afterEach() {
+        new MemberRepositoryV5(dataSource).delete(member.getMemberId());
+        dataSource.close();
+    }
+
+    @Test
+    @DisplayName("MemberRepository 메서드별 호출 수, 실패 수, row 수 기록")
+    void meteredRepository() {
+        MemberRepository repository = new MeteredMemberRepository(new MemberRepositoryV5(dataSource), metrics);
+
+        repository.save(member);
+        assertThrows(DuplicateKeyException.class, () -> repository.save(member));
+        repository.findById(member.getMemberId());
+        repository.addMoney(member.getMemberId(), 100);
+
+        Map<String, OperationStats.Snapshot> operations = metrics.getOperations();
+        assertThat(operations.get("save").getCalls()).isEqualTo(2);
+        assertThat(operations.get("save").getErrors()).isEqualTo(1);
+        assertThat(operations.get("findById").getCalls()).isEqualTo(1);
+        assertThat(operations.get("addMoney").getRows()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("V0~V3 리포지토리는 JDBC 프록시로 SQL별, 메서드별 기록")
+    void statementMetrics() throws SQLException {
+        MemberRepositoryV1 repository = new MemberRepositoryV1(new StatementMetricsDataSource(dataSource, metrics, true));
+
+        repository.save(member);
+        repository.update(member.getMemberId(), 20000);
+        repository.findById(member.getMemberId());
+        repository.findById(member.getMemberId());
+
+        Map<String, OperationStats.Snapshot> statements = metrics.getStatements();
+        log.info("statements={}", statements);
+        assertThat(statements.get("insert into member(member_id, money) values (?, ...)").getRows()).isEqualTo(1);
+        assertThat(statements.get("select * from member where member_id = ?").getCalls()).isEqualTo(2);
+
+        Map<String, OperationStats.Snapshot> operations = metrics.getOperations();
+        assertThat(operations).containsKeys("MemberRepositoryV1.save", "MemberRepositoryV1.update", "MemberRepositoryV1.findById");
+        assertThat(operations.get("MemberRepositoryV1.update").getRows()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("prepareCall()로 만든 statement도 CallableStatement로 사용 가능")
+    void callableStatement() throws SQLException {
+        try (Connection con = new StatementMetricsDataSource(dataSource, metrics).getConnection();
+             CallableStatement cstmt = con.prepareCall("call 1")) {
+            cstmt.execute();
+        }
+
+        assertThat(metrics.getStatements().get("call ?").getCalls()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("JMX로 조회")
+    void jmx() throws Exception {
+        MemberRepository repository = new MeteredMemberRepository(new MemberRepositoryV5(dataSource), metrics);
+        repository.save(member);
+
+        ObjectName objectName = metrics.registerMBean("test");
+        try {
+            TabularData operations = (TabularData) ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "Operations");
+            assertThat(operations.size()).isEqualTo(1);
+        } finally {
+            metrics.unregisterMBean(objectName);
+        }
+    }
+
+}
@@ -0,0 +1,162 @@
+package hello.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.metrics.OperationStats;
+import hello.jdbc.metrics.StatementMetrics;
+import hello.jdbc.transaction.Savepoints;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@Slf4j
+class UnitOfWorkMemberRepositoryTest {
+
+    public static final String MEMBER_A = "uowA";
+    public static final String MEMBER_B = "uowB";
+    public static final String MEMBER_C = "uowC";
+
+    HikariDataSource dataSource;
+    StatementMetrics metrics;
+    MemberRepositoryV4_1 plainRepository;
+    UnitOfWorkMemberRepository repository;
+    TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+
+        // SQLException을 MyDbException으로 감싸는 V4_1을 사용해서 커밋 시점의 예외 변환까지 확인
+        plainRepository = new MemberRepositoryV4_1(dataSource);
+        metrics = new StatementMetrics();
+        repository = new UnitOfWorkMemberRepository(new MeteredMemberRepository(plainRepository, metrics), dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        plainRepository.save(new Member(MEMBER_A, 10000));
+        plainRepository.save(new Member(MEMBER_B, 10000));
+    }
+
+    @AfterEach
+    void afterEach() {
+        new JdbcTemplate(dataSource).update("delete from member where member_id like 'uow%'");
+        dataSource.close();
+    }
+
+    @Test
+    @DisplayName("같은 회원의 update는 마지막 값만 커밋 직전에 배치로 반영")
+    void coalesceUpdates() {
+        transactionTemplate.executeWithoutResult(status -> {
+            repository.update(MEMBER_A, 9000);
+            repository.update(MEMBER_A, 8000);
+            repository.update(MEMBER_B, 12000);
+
+            // 아직 DB에는 반영되지 않았지만 조회 결과에는 보임
+            assertThat(repository.getPendingCount()).isEqualTo(2);
+            assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(8000);
+            assertThat(repository.findAllByIds(List.of(MEMBER_A, MEMBER_B)).get(MEMBER_B).getMoney()).isEqualTo(12000);
+        });
+
+        assertThat(plainRepository.findById(MEMBER_A).getMoney()).isEqualTo(8000);
+        assertThat(plainRepository.findById(MEMBER_A).getVersion()).isEqualTo(1);
+        assertThat(plainRepository.findById(MEMBER_B).getMoney()).isEqualTo(12000);
+
+        Map<String, OperationStats.Snapshot> operations = metrics.getOperations();
+        assertThat(operations).doesNotContainKey("update");
+        assertThat(operations.get("updateAll").getCalls()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("save 후 update는 바뀐 값으로 저장하고, save 후 delete는 아무것도 반영하지 않음")
+    void coalesceSaveAndDelete() {
+        transactionTemplate.executeWithoutResult(status -> {
+            repository.save(new Member(MEMBER_C, 1000));
+            repository.update(MEMBER_C, 2000);
+            repository.delete(MEMBER_B);
+
+            assertThat(repository.findById(MEMBER_C).getMoney()).isEqualTo(2000);
+            assertThrows(NoSuchElementException.class, () -> repository.findById(MEMBER_B));
+        });
+
+        assertThat(plainRepository.findById(MEMBER_C).getMoney()).isEqualTo(2000);
+        assertThrows(NoSuchElementException.class, () -> plainRepository.findById(MEMBER_B));
+
+        metrics.reset();
+        transactionTemplate.executeWithoutResult(status -> {
+            repository.save(new Member("uowD", 1000));
+            repository.delete("uowD");
+        });
+        assertThat(metrics.getOperations()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("DB에서 계산하는 쓰기 전에는 모아둔 쓰기를 먼저 반영")
+    void flushBeforeSqlWrite() {
+        transactionTemplate.executeWithoutResult(status -> {
+            repository.update(MEMBER_A, 5000);
+            repository.addMoney(MEMBER_A, 100);
+            assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(5100);
+        });
+
+        assertThat(plainRepository.findById(MEMBER_A).getMoney()).isEqualTo(5100);
+    }
+
+    @Test
+    @DisplayName("커밋 시점의 반영 오류는 스프링 예외로 변환되고 트랜잭션은 롤백됨")
+    void flushErrorIsTranslated() {
+        assertThrows(DuplicateKeyException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            repository.update(MEMBER_B, 1);
+            repository.save(new Member(MEMBER_A, 1));
+        }));
+
+        assertThat(plainRepository.findById(MEMBER_B).getMoney()).isEqualTo(10000);
+        assertThat(repository.getPendingCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("롤백되면 모아둔 쓰기는 반영하지 않음")
+    void rollbackDiscards() {
+        transactionTemplate.executeWithoutResult(status -> {
+            repository.update(MEMBER_A, 1);
+            status.setRollbackOnly();
+        });
+
+        assertThat(plainRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+        assertThat(metrics.getOperations()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("세이브포인트 이전의 쓰기는 남고, 이후의 쓰기만 되돌림")
+    void rollbackToSavepoint() {
+        transactionTemplate.executeWithoutResult(status -> {
+            repository.update(MEMBER_A, 9000);
+            Object savepoint = Savepoints.create(status);
+            repository.update(MEMBER_A, 1000);
+            repository.update(MEMBER_B, 1000);
+
+            Savepoints.rollbackTo(status, savepoint);
+            status.releaseSavepoint(savepoint);
+            assertThat(repository.getPendingCount()).isZero();
+            assertThat(repository.findById(MEMBER_A).getMoney()).isEqualTo(9000);
+        });
+
+        assertThat(plainRepository.findById(MEMBER_A).getMoney()).isEqualTo(9000);
+        assertThat(plainRepository.findById(MEMBER_B).getMoney()).isEqualTo(10000);
+    }
+}
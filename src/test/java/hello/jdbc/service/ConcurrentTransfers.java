@@ -0,0 +1,73 @@
+package hello.jdbc.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 여러 스레드에서 동시에 이체를 실행하고 성공/실패 횟수를 세는 테스트용 도우미
+ * (처리량 비교는 부하 테스트에서 함: ./gradlew loadTest)
+ */
+@Slf4j
+class ConcurrentTransfers {
+
+    interface TransferTask {
+        // threadIndex번째 스레드의 iteration번째 이체
+        void transfer(int threadIndex, int iteration);
+    }
+
+    static Result run(String name, int threads, int iterations, TransferTask task) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicLong successes = new AtomicLong();
+        AtomicLong failures = new AtomicLong();
+
+        List<Runnable> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int threadIndex = t;
+            workers.add(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < iterations; i++) {
+                    try {
+                        task.transfer(threadIndex, i);
+                        successes.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            });
+        }
+        workers.forEach(executor::execute);
+
+        start.countDown();
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.MINUTES);
+
+        Result result = new Result(successes.get(), failures.get());
+        log.info("[{}] threads={}, success={}, aborts={}", name, threads, result.successes, result.failures);
+        return result;
+    }
+
+    static class Result {
+
+        final long successes;
+        final long failures;
+
+        Result(long successes, long failures) {
+            this.successes = successes;
+            this.failures = failures;
+        }
+    }
+
+}
@@ -0,0 +1,209 @@
+package hello.jdbc.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.repository.ShardedHotAccountMemberRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 입금이 한 회원(가맹점)에게 몰리는 경우
+ */
+@Slf4j
+class HotAccountTransferTest {
+
+    static final String MERCHANT = "hotM";
+    static final int THREADS = 8;
+    static final int ITERATIONS = 200;
+
+    HikariDataSource dataSource;
+    MemberRepositoryV5 plainRepository;
+    ShardedHotAccountMemberRepository shardedRepository;
+    TransactionTemplate transactionTemplate;
+    MemberServiceV4 shardedService;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        dataSource.setMaximumPoolSize(THREADS);
+
+        plainRepository = new MemberRepositoryV5(dataSource);
+        shardedRepository = new ShardedHotAccountMemberRepository(plainRepository, dataSource, Set.of(MERCHANT), THREADS);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        shardedService = new MemberServiceV4(shardedRepository, TransferStrategy.SINGLE_STATEMENT);
+
+        shardedRepository.save(new Member(MERCHANT, 0));
+        for (int i = 0; i < THREADS; i++) {
+            shardedRepository.save(new Member(sender(i), 1_000_000));
+        }
+    }
+
+    @AfterEach
+    void afterEach() {
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.update("delete from member_sub_balance where member_id like 'hot%'");
+        template.update("delete from member where member_id like 'hot%'");
+        dataSource.close();
+    }
+
+    @Test
+    @DisplayName("입금은 sub row에 나누어 반영되고, 조회 시에는 합계가 보임")
+    void creditsAreSpread() {
+        for (int i = 0; i < THREADS; i++) {
+            transfer(shardedService, sender(i), MERCHANT, 100);
+        }
+
+        assertThat(shardedRepository.findById(MERCHANT).getMoney()).isEqualTo(THREADS * 100);
+        assertThat(plainRepository.findById(MERCHANT).getMoney()).isZero();
+        Integer usedSlots = new JdbcTemplate(dataSource).queryForObject(
+                "select count(*) from member_sub_balance where member_id=? and money > 0", Integer.class, MERCHANT);
+        assertThat(usedSlots).isEqualTo(THREADS);
+    }
+
+    @Test
+    @DisplayName("main row 잔고가 부족하면 sub row를 합친 뒤 출금")
+    void debitConsolidates() {
+        for (int i = 0; i < THREADS; i++) {
+            transfer(shardedService, sender(i), MERCHANT, 100);
+        }
+
+        assertThrows(IllegalStateException.class, () -> transfer(shardedService, MERCHANT, sender(0), THREADS * 100 + 1));
+        transfer(shardedService, MERCHANT, sender(0), THREADS * 100);
+
+        assertThat(shardedRepository.findById(MERCHANT).getMoney()).isZero();
+        assertThat(shardedRepository.findById(sender(0)).getMoney()).isEqualTo(1_000_000 + (THREADS - 1) * 100);
+    }
+
+    @Test
+    @DisplayName("sub row에 입금되어도 version이 증가하므로 낙관적 lock 충돌이 감지됨")
+    void optimisticLockSeesSubRows() {
+        Member stale = shardedRepository.findById(MERCHANT);
+        shardedRepository.addMoney(MERCHANT, 500);
+
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> shardedRepository.update(MERCHANT, stale.getMoney() + 1, stale.getVersion()));
+
+        Member current = shardedRepository.findById(MERCHANT);
+        shardedRepository.update(MERCHANT, current.getMoney() + 1, current.getVersion());
+        assertThat(shardedRepository.findById(MERCHANT).getMoney()).isEqualTo(501);
+    }
+
+    /*
+    단일 row와 sub row 분산의 처리량 비교는 부하 테스트로 측정
+    ./gradlew loadTest -Pargs="--profile=hotReceiver --threads=8"              (단일 row)
+    ./gradlew loadTest -Pargs="--profile=hotReceiver --threads=8 --hotSlots=8" (sub row 분산)
+     */
+    @Test
+    @DisplayName("가맹점 한 곳으로 동시 이체 - sub row에 나누어 입금되어도 빠짐없이 반영됨")
+    void singleHotReceiver() throws InterruptedException {
+        ConcurrentTransfers.Result result = ConcurrentTransfers.run("HOT_SHARDED", THREADS, ITERATIONS,
+                (thread, i) -> transfer(shardedService, sender(thread), MERCHANT, 1));
+
+        assertThat(result.failures).isZero();
+        assertThat(shardedRepository.findById(MERCHANT).getMoney()).isEqualTo(THREADS * ITERATIONS);
+    }
+
+    @Test
+    @DisplayName("hot 회원 둘 사이에 반대 순서로 addMoneyAll - lock 순서가 같아서 데드락 없음")
+    void addMoneyAllInOppositeOrder() throws InterruptedException {
+        String other = "hotN";
+        ShardedHotAccountMemberRepository repository =
+                new ShardedHotAccountMemberRepository(plainRepository, dataSource, Set.of(MERCHANT, other), THREADS);
+        repository.save(new Member(other, 0));
+        // main row는 0이고 잔고는 sub row에만 있으므로 출금할 때마다 sub row를 합치게 됨
+        repository.addMoney(MERCHANT, 1000);
+        repository.addMoney(other, 1000);
+
+        ConcurrentTransfers.Result result = ConcurrentTransfers.run("HOT_ADD_MONEY_ALL", THREADS, 50, (thread, i) -> {
+            Map<String, Integer> deltas = new LinkedHashMap<>();
+            if (thread % 2 == 0) {
+                deltas.put(MERCHANT, 1);
+                deltas.put(other, -1);
+            } else {
+                deltas.put(other, 1);
+                deltas.put(MERCHANT, -1);
+            }
+            transactionTemplate.executeWithoutResult(status -> repository.addMoneyAll(deltas));
+        });
+
+        assertThat(result.failures).isZero();
+        assertThat(repository.findById(MERCHANT).getMoney() + repository.findById(other).getMoney()).isEqualTo(2000);
+    }
+
+    @Test
+    @DisplayName("hot 회원 삭제도 main row -> sub row 순서로 lock을 잡으므로 consolidate와 데드락 없음")
+    void deleteLocksInOrder() throws InterruptedException {
+        shardedRepository.addMoney(MERCHANT, 100);
+
+        AtomicReference<Throwable> deleteError = new AtomicReference<>();
+        Thread deleter = new Thread(() -> {
+            try {
+                transactionTemplate.executeWithoutResult(status -> shardedRepository.delete(MERCHANT));
+            } catch (Throwable e) {
+                deleteError.set(e);
+            }
+        });
+
+        transactionTemplate.executeWithoutResult(status -> {
+            // main row lock을 먼저 잡고, 삭제하는 트랜잭션이 lock을 기다리는 동안 sub row까지 lock을 잡음
+            plainRepository.findByIdForUpdate(MERCHANT);
+            deleter.start();
+            sleep(200);
+            shardedRepository.consolidate(MERCHANT);
+        });
+        deleter.join();
+
+        assertThat(deleteError.get()).isNull();
+        assertThat(new JdbcTemplate(dataSource).queryForObject(
+                "select count(*) from member_sub_balance where member_id=?", Integer.class, MERCHANT)).isZero();
+    }
+
+    @Test
+    @DisplayName("consolidate는 트랜잭션 밖에서 호출하면 예외")
+    void consolidateRequiresTransaction() {
+        shardedRepository.addMoney(MERCHANT, 100);
+
+        assertThrows(IllegalStateException.class, () -> shardedRepository.consolidate(MERCHANT));
+        transactionTemplate.executeWithoutResult(status -> shardedRepository.consolidate(MERCHANT));
+
+        assertThat(plainRepository.findById(MERCHANT).getMoney()).isEqualTo(100);
+    }
+
+    // @Transactional 프록시 대신 TransactionTemplate으로 트랜잭션을 적용해서 이체 (실패 시 IllegalStateException, 롤백)
+    private void transfer(MemberServiceV4 service, String senderId, String receiverId, int money) {
+        transactionTemplate.executeWithoutResult(status -> service.transfer(senderId, receiverId, money));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String sender(int index) {
+        return "hotS" + index;
+    }
+
+}
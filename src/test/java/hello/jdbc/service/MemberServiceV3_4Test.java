@@ -0,0 +1,169 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.repository.UnitOfWorkMemberRepository;
+import hello.jdbc.transaction.TransactionRunner;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MemberServiceV3_4Test {
+
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_B = "memberB";
+    public static final String MEMBER_EX = "ex";
+
+    private DriverManagerDataSource dataSource;
+    private MemberRepositoryV3 memberRepository;
+    private MemberServiceV3_4 memberService;
+
+    @BeforeEach
+    void beforeEach() {
+        dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        memberRepository = new MemberRepositoryV3(dataSource);
+        memberService = new MemberServiceV3_4(new TransactionRunner(dataSource), memberRepository);
+    }
+
+    @AfterEach
+    void afterEach() throws SQLException {
+        memberRepository.delete(MEMBER_A);
+        memberRepository.delete(MEMBER_B);
+        memberRepository.delete(MEMBER_EX);
+    }
+
+    @Test
+    @DisplayName("정상 이체")
+    void transfer() throws SQLException {
+        Member memberA = new Member(MEMBER_A, 10000);
+        Member memberB = new Member(MEMBER_B, 10000);
+
+        memberRepository.save(memberA);
+        memberRepository.save(memberB);
+
+        memberService.transfer(memberA.getMemberId(), memberB.getMemberId(), 2000);
+
+        Member foundMemA = memberRepository.findById(memberA.getMemberId());
+        Member foundMemB = memberRepository.findById(memberB.getMemberId());
+
+        assertThat(foundMemA.getMoney()).isEqualTo(8000);
+        assertThat(foundMemB.getMoney()).isEqualTo(12000);
+        // 트랜잭션이 끝나면 커넥션 바인딩을 해제함
+        assertThat(TransactionSynchronizationManager.hasResource(dataSource)).isFalse();
+    }
+
+    @Test
+    @DisplayName("이체 중 예외 발생")
+    void transferEx() throws SQLException {
+        Member memberA = new Member(MEMBER_A, 10000);
+        Member memberEx = new Member(MEMBER_EX, 10000);
+
+        memberRepository.save(memberA);
+        memberRepository.save(memberEx);
+
+        assertThrows(IllegalStateException.class, () -> memberService.transfer(memberA.getMemberId(), memberEx.getMemberId(), 2000));
+
+        Member foundMemA = memberRepository.findById(memberA.getMemberId());
+        Member foundMemEx = memberRepository.findById(memberEx.getMemberId());
+
+        // 예외 발생으로 인해 롤백되었기 때문에 둘다 잔고 10000원인 초기 상태로 되돌아감
+        assertThat(foundMemA.getMoney()).isEqualTo(10000);
+        assertThat(foundMemEx.getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    @DisplayName("바깥 트랜잭션이 있으면 참여하므로 바깥 트랜잭션과 함께 롤백됨")
+    void joinOuterTransaction() throws SQLException {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        new TransactionTemplate(new DataSourceTransactionManager(dataSource)).executeWithoutResult(status -> {
+            memberService.transfer(MEMBER_A, MEMBER_B, 2000);
+            status.setRollbackOnly();
+        });
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    @DisplayName("synchronization = true이면 트랜잭션 동기화를 사용하는 리포지토리도 동작 (커밋 직전 반영)")
+    void withSynchronization() throws SQLException {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        UnitOfWorkMemberRepository unitOfWork = new UnitOfWorkMemberRepository(new MemberRepositoryV5(dataSource), dataSource);
+        TransactionRunner runner = new TransactionRunner(dataSource, true);
+
+        runner.runWithoutResult(con -> {
+            unitOfWork.update(MEMBER_A, 7000);
+            assertThat(unitOfWork.getPendingCount()).isEqualTo(1);
+        });
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(7000);
+        assertThat(TransactionSynchronizationManager.isSynchronizationActive()).isFalse();
+    }
+
+    @Test
+    @DisplayName("트랜잭션 없이 동기화만 된 커넥션(SUPPORTS)에는 참여하지 않고 새 트랜잭션으로 실행해서 롤백됨")
+    void notJoinNonTransactionalConnection() throws SQLException {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_EX, 10000));
+        TransactionTemplate supports = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        supports.setPropagationBehavior(TransactionDefinition.PROPAGATION_SUPPORTS);
+
+        supports.executeWithoutResult(status -> {
+            try {
+                // 오토 커밋 커넥션이 동기화되어 바인딩됨
+                memberRepository.findById(MEMBER_A);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+            assertThrows(IllegalStateException.class, () -> memberService.transfer(MEMBER_A, MEMBER_EX, 2000));
+            assertThat(TransactionSynchronizationManager.hasResource(dataSource)).isTrue();
+            assertThat(TransactionSynchronizationManager.isActualTransactionActive()).isFalse();
+        });
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    @DisplayName("afterCommit()에서 예외가 발생해도 afterCompletion()을 호출하고 바인딩을 모두 해제")
+    void afterCommitFailure() {
+        TransactionRunner runner = new TransactionRunner(dataSource, true);
+        AtomicInteger completedStatus = new AtomicInteger(-1);
+
+        assertThrows(IllegalStateException.class, () -> runner.runWithoutResult(con -> {
+            assertThat(TransactionSynchronizationManager.isActualTransactionActive()).isTrue();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    throw new IllegalStateException("afterCommit failure");
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    completedStatus.set(status);
+                }
+            });
+        }));
+
+        assertThat(completedStatus.get()).isEqualTo(TransactionSynchronization.STATUS_COMMITTED);
+        assertThat(TransactionSynchronizationManager.hasResource(dataSource)).isFalse();
+        assertThat(TransactionSynchronizationManager.isSynchronizationActive()).isFalse();
+        assertThat(TransactionSynchronizationManager.isActualTransactionActive()).isFalse();
+    }
+}
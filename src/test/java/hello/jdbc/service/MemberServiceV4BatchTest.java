@@ -0,0 +1,305 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.domain.TransferRequest;
+import hello.jdbc.domain.TransferResult;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Slf4j
+class MemberServiceV4BatchTest {
+
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_B = "memberB";
+    public static final String MEMBER_EX = "ex";
+
+    @Autowired
+    private MemberRepository memberRepository;
+
+    @Autowired
+    private MemberServiceV4 memberService;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @TestConfiguration
+    static class TestConfig {
+        @Bean
+        DataSource dataSource() {
+            return new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        }
+
+        @Bean
+        PlatformTransactionManager transactionManager() {
+            return new DataSourceTransactionManager(dataSource());
+        }
+
+        @Bean
+        MemberRepository memberRepository() {
+            return new MemberRepositoryV5(dataSource());
+        }
+
+        @Bean
+        MemberServiceV4 memberServiceV4() {
+            return new MemberServiceV4(memberRepository());
+        }
+    }
+
+    @AfterEach
+    void afterEach() {
+        memberRepository.delete(MEMBER_A);
+        memberRepository.delete(MEMBER_B);
+        memberRepository.delete(MEMBER_EX);
+    }
+
+    @Test
+    @DisplayName("여러 건 이체 - 실패한 건만 반영되지 않음")
+    void transferAll() {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+        memberRepository.save(new Member(MEMBER_EX, 10000));
+
+        List<TransferResult> results = memberService.transferAll(List.of(
+                new TransferRequest(MEMBER_A, MEMBER_B, 1000),
+                new TransferRequest(MEMBER_A, MEMBER_EX, 1000),   // validation 실패
+                new TransferRequest(MEMBER_B, MEMBER_A, 50000),   // 잔고 부족
+                new TransferRequest(MEMBER_B, MEMBER_A, 3000)));
+
+        assertThat(results).extracting(TransferResult::isSuccess).containsExactly(true, false, false, true);
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(12000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(8000);
+        assertThat(memberRepository.findById(MEMBER_EX).getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    @DisplayName("합산 이체 - 회원별 순 변동액으로 반영")
+    void transferAllNetted() {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+        memberRepository.save(new Member(MEMBER_EX, 10000));
+
+        List<TransferResult> results = memberService.transferAllNetted(List.of(
+                new TransferRequest(MEMBER_A, MEMBER_B, 1000),
+                new TransferRequest(MEMBER_B, MEMBER_A, 400),
+                new TransferRequest(MEMBER_A, MEMBER_EX, 1000),   // validation 실패
+                new TransferRequest(MEMBER_A, MEMBER_B, 500)));
+
+        assertThat(results).extracting(TransferResult::isSuccess).containsExactly(true, true, false, true);
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(8900);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(11100);
+        assertThat(memberRepository.findById(MEMBER_EX).getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    @DisplayName("합산 이체 - 합산 반영이 불가능하면 건별로 처리")
+    void transferAllNettedFallback() {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        List<TransferResult> results = memberService.transferAllNetted(List.of(
+                new TransferRequest(MEMBER_A, MEMBER_B, 20000),   // 잔고 부족
+                new TransferRequest(MEMBER_B, MEMBER_A, 1000)));
+
+        assertThat(results).extracting(TransferResult::isSuccess).containsExactly(false, true);
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(11000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(9000);
+    }
+
+    @Test
+    @DisplayName("여러 스레드의 이체 요청을 모아서 한 번에 커밋")
+    void coalescer() throws Exception {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        List<CompletableFuture<TransferResult>> futures = new ArrayList<>();
+        try (TransferCoalescer coalescer = new TransferCoalescer(memberService, Duration.ofMillis(20), 50)) {
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                threads.add(new Thread(() -> {
+                    for (int i = 0; i < 25; i++) {
+                        CompletableFuture<TransferResult> future = coalescer.submit(MEMBER_A, MEMBER_B, 10);
+                        synchronized (futures) {
+                            futures.add(future);
+                        }
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            for (CompletableFuture<TransferResult> future : futures) {
+                assertThat(future.get().isSuccess()).isTrue();
+            }
+        }
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(9000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(11000);
+    }
+
+    @Test
+    @DisplayName("요청 도중 종료해도 모든 요청이 처리되거나 실패로 완료됨")
+    void coalescerClosedWhileSubmitting() throws Exception {
+        memberRepository.save(new Member(MEMBER_A, 1_000_000));
+        memberRepository.save(new Member(MEMBER_B, 1_000_000));
+
+        List<CompletableFuture<TransferResult>> futures = new ArrayList<>();
+        TransferCoalescer coalescer = new TransferCoalescer(memberService, Duration.ofMillis(1), 50);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 200; i++) {
+                    CompletableFuture<TransferResult> future = coalescer.submit(MEMBER_A, MEMBER_B, 1);
+                    synchronized (futures) {
+                        futures.add(future);
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        Thread.sleep(5);
+        coalescer.close();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // 완료되지 않는 future가 있으면 타임아웃
+        CompletableFuture.allOf(futures.toArray(CompletableFuture<?>[]::new))
+                .handle((result, e) -> null)
+                .get(10, TimeUnit.SECONDS);
+        long succeeded = futures.stream().filter(future -> !future.isCompletedExceptionally() && future.join().isSuccess()).count();
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(1_000_000 + succeeded);
+    }
+
+    @Test
+    @DisplayName("작업 스레드가 인터럽트되면 모으던 요청과 남은 요청이 모두 실패로 완료됨")
+    void coalescerInterrupted() throws Exception {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        // window를 길게 잡아서 요청을 모으는 도중에 인터럽트되도록 함
+        try (TransferCoalescer coalescer = new TransferCoalescer(memberService, Duration.ofSeconds(30), 50)) {
+            List<CompletableFuture<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                futures.add(coalescer.submit(MEMBER_A, MEMBER_B, 10));
+            }
+            Thread.sleep(100);
+            Thread worker = Thread.getAllStackTraces().keySet().stream()
+                    .filter(thread -> thread.getName().equals("transfer-coalescer"))
+                    .findFirst()
+                    .orElseThrow();
+            worker.interrupt();
+            worker.join(5000);
+
+            assertThat(worker.isAlive()).isFalse();
+            assertThat(futures).allMatch(CompletableFuture::isCompletedExceptionally);
+            assertThat(coalescer.submit(MEMBER_A, MEMBER_B, 10)).isCompletedExceptionally();
+        }
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    @DisplayName("비동기 이체 - 스레드 풀에서 실행하고 결과를 future로 반환")
+    void asyncTransfer() {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        List<CompletableFuture<TransferResult>> futures = new ArrayList<>();
+        try (AsyncTransferService asyncService = new AsyncTransferService(memberService, 4, 100, AsyncTransferService.RejectionPolicy.CALLER_RUNS)) {
+            for (int i = 0; i < 100; i++) {
+                futures.add(asyncService.transfer(MEMBER_A, MEMBER_B, 10, TransferStrategy.SINGLE_STATEMENT));
+            }
+            futures.add(asyncService.transfer(MEMBER_A, MEMBER_B, 1_000_000, TransferStrategy.SINGLE_STATEMENT));
+
+            CompletableFuture.allOf(futures.toArray(CompletableFuture<?>[]::new)).join();
+            log.info("queue wait {}", asyncService.getQueueWaitHistogram());
+            assertThat(asyncService.getRejectedCount()).isZero();
+        }
+
+        assertThat(futures.subList(0, 100)).allMatch(future -> future.join().isSuccess());
+        // 잔고 부족은 예외가 아닌 실패 결과로 반환
+        assertThat(futures.get(100).join().isSuccess()).isFalse();
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(9000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(11000);
+    }
+
+    @Test
+    @DisplayName("비동기 이체 - 큐가 가득 차면 바로 거절하고 실패 결과로 반환")
+    void asyncTransferRejected() {
+        memberRepository.save(new Member(MEMBER_A, 1_000_000));
+        memberRepository.save(new Member(MEMBER_B, 1_000_000));
+
+        List<CompletableFuture<TransferResult>> futures = new ArrayList<>();
+        try (AsyncTransferService asyncService = new AsyncTransferService(memberService, 1, 4, AsyncTransferService.RejectionPolicy.ABORT)) {
+            for (int i = 0; i < 200; i++) {
+                futures.add(asyncService.transfer(MEMBER_A, MEMBER_B, 1, TransferStrategy.SINGLE_STATEMENT));
+            }
+            assertThat(asyncService.getMaxQueueDepth()).isLessThanOrEqualTo(4);
+        }
+
+        long rejected = futures.stream().map(CompletableFuture::join)
+                .filter(result -> !result.isSuccess() && result.getMessage().startsWith("rejected"))
+                .count();
+        long succeeded = futures.stream().filter(future -> future.join().isSuccess()).count();
+        assertThat(rejected).isPositive();
+        assertThat(succeeded + rejected).isEqualTo(200);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(1_000_000 + succeeded);
+    }
+
+    @Test
+    @DisplayName("비동기 이체 - 종료를 기다리다 인터럽트되면 큐에 남은 요청은 거절 결과로 완료")
+    void asyncTransferInterruptedWhileClosing() throws Exception {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        List<CompletableFuture<TransferResult>> futures = new ArrayList<>();
+        // 다른 트랜잭션이 memberA의 lock을 잡고 있어서 첫 번째 이체는 실행 중에 대기하고, 나머지는 큐에서 대기
+        try (Connection lockHolder = dataSource.getConnection()) {
+            lockHolder.setAutoCommit(false);
+            lockHolder.createStatement().execute("select * from member where member_id='" + MEMBER_A + "' for update");
+
+            AsyncTransferService asyncService = new AsyncTransferService(memberService, 1, 10, AsyncTransferService.RejectionPolicy.ABORT);
+            for (int i = 0; i < 5; i++) {
+                futures.add(asyncService.transfer(MEMBER_A, MEMBER_B, 10, TransferStrategy.SINGLE_STATEMENT));
+            }
+
+            Thread.currentThread().interrupt();
+            asyncService.close();
+            assertThat(Thread.interrupted()).isTrue();
+
+            lockHolder.rollback();
+        }
+
+        CompletableFuture.allOf(futures.toArray(CompletableFuture<?>[]::new)).get(10, TimeUnit.SECONDS);
+        assertThat(futures.subList(1, 5)).allMatch(future -> future.join().getMessage().equals("rejected: AsyncTransferService is closed"));
+    }
+
+}
@@ -0,0 +1,289 @@
+package hello.jdbc.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.CachingMemberRepository;
+import hello.jdbc.repository.MemberRepository;
+import hello.jdbc.repository.MemberRepositoryV4_1;
+import hello.jdbc.repository.MemberRepositoryV4_2;
+import hello.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.NoSuchElementException;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@Slf4j
+class MemberServiceV4StrategyTest {
+
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_B = "memberB";
+    public static final String MEMBER_EX = "ex";
+
+    @Autowired
+    private MemberRepository memberRepository;
+
+    @Autowired
+    private MemberServiceV4 memberService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @TestConfiguration
+    static class TestConfig {
+        @Bean
+        DataSource dataSource() {
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setJdbcUrl(URL);
+            dataSource.setUsername(USERNAME);
+            dataSource.setPassword(PASSWORD);
+            return dataSource;
+        }
+
+        @Bean
+        PlatformTransactionManager transactionManager() {
+            return new DataSourceTransactionManager(dataSource());
+        }
+
+        @Bean
+        MemberRepository memberRepository() {
+            return new MemberRepositoryV5(dataSource());
+        }
+
+        @Bean
+        MemberServiceV4 memberServiceV4() {
+            return new MemberServiceV4(memberRepository(), TransferStrategy.SINGLE_STATEMENT);
+        }
+    }
+
+    @BeforeEach
+    void beforeEach() {
+        memberRepository.save(new Member(MEMBER_A, 1_000_000));
+        memberRepository.save(new Member(MEMBER_B, 1_000_000));
+    }
+
+    @AfterEach
+    void afterEach() {
+        memberRepository.delete(MEMBER_A);
+        memberRepository.delete(MEMBER_B);
+        memberRepository.delete(MEMBER_EX);
+    }
+
+    @Test
+    @DisplayName("단일 쿼리 이체")
+    void singleStatementTransfer() {
+        memberService.transfer(MEMBER_A, MEMBER_B, 2000);
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(998_000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(1_002_000);
+    }
+
+    @Test
+    @DisplayName("단일 쿼리 이체 - 잔고 부족")
+    void singleStatementInsufficientFunds() {
+        assertThrows(IllegalStateException.class, () -> memberService.transfer(MEMBER_A, MEMBER_B, 2_000_000));
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(1_000_000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(1_000_000);
+    }
+
+    @Test
+    @DisplayName("단일 쿼리 이체 - 이체 중 예외 발생 시 롤백")
+    void singleStatementTransferEx() {
+        memberRepository.save(new Member(MEMBER_EX, 10000));
+
+        assertThrows(IllegalStateException.class, () -> memberService.transfer(MEMBER_A, MEMBER_EX, 2000));
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(1_000_000);
+        assertThat(memberRepository.findById(MEMBER_EX).getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    @DisplayName("단일 쿼리 이체 - 동시에 출금해도 잔고가 음수가 되지 않음")
+    void singleStatementConcurrentDebits() throws InterruptedException {
+        memberRepository.update(MEMBER_A, 1000);
+
+        ConcurrentTransfers.Result result = ConcurrentTransfers.run("SINGLE_STATEMENT_OVERDRAFT", 8, 5,
+                (thread, i) -> memberService.transfer(MEMBER_A, MEMBER_B, 100));
+
+        assertThat(result.successes).isEqualTo(10);
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isZero();
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(1_001_000);
+    }
+
+    @Test
+    @DisplayName("단일 쿼리 이체 - TransferRepository가 아닌 데코레이터는 출금 + 입금 쿼리로 이체")
+    void singleStatementWithDecorator() {
+        CachingMemberRepository cachingRepository = new CachingMemberRepository(memberRepository, 100);
+        MemberServiceV4 service = new MemberServiceV4(cachingRepository, TransferStrategy.SINGLE_STATEMENT);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        transactionTemplate.executeWithoutResult(status -> service.transfer(MEMBER_A, MEMBER_B, 2000));
+        assertThrows(IllegalStateException.class,
+                () -> transactionTemplate.executeWithoutResult(status -> service.transfer(MEMBER_A, "none", 2000)));
+
+        assertThat(cachingRepository.findById(MEMBER_A).getMoney()).isEqualTo(998_000);
+        assertThat(cachingRepository.findById(MEMBER_B).getMoney()).isEqualTo(1_002_000);
+    }
+
+    @Test
+    @DisplayName("비관적 lock 이체 - 이체 중 예외 발생 시 롤백")
+    void pessimisticLockTransferEx() {
+        memberRepository.save(new Member(MEMBER_EX, 10000));
+
+        assertThrows(IllegalStateException.class, () -> memberService.transfer(MEMBER_A, MEMBER_EX, 2000, TransferStrategy.PESSIMISTIC_LOCK));
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(1_000_000);
+        assertThat(memberRepository.findById(MEMBER_EX).getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    @DisplayName("낙관적 lock 이체 - 수정할 때마다 version 증가")
+    void optimisticLockTransfer() {
+        long versionA = memberRepository.findById(MEMBER_A).getVersion();
+
+        memberService.transfer(MEMBER_A, MEMBER_B, 2000, TransferStrategy.OPTIMISTIC_LOCK);
+
+        Member memberA = memberRepository.findById(MEMBER_A);
+        assertThat(memberA.getMoney()).isEqualTo(998_000);
+        assertThat(memberA.getVersion()).isEqualTo(versionA + 1);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(1_002_000);
+    }
+
+    @Test
+    @DisplayName("낙관적 lock - 조회 이후 다른 곳에서 수정했다면 충돌 예외")
+    void optimisticLockConflict() {
+        Member stale = memberRepository.findById(MEMBER_A);
+        memberRepository.update(MEMBER_A, 500_000, stale.getVersion());
+
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> memberRepository.update(MEMBER_A, 0, stale.getVersion()));
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(500_000);
+    }
+
+    @Test
+    @DisplayName("낙관적 lock - 없는 회원 수정은 version 충돌이 아닌 예외 (재시도하지 않음)")
+    void optimisticLockMissingMember() {
+        Member stale = memberRepository.findById(MEMBER_A);
+        memberRepository.delete(MEMBER_A);
+
+        assertThrows(EmptyResultDataAccessException.class,
+                () -> memberRepository.update(MEMBER_A, 0, stale.getVersion()));
+        assertThrows(NoSuchElementException.class,
+                () -> new MemberRepositoryV4_1(dataSource).update(MEMBER_A, 0, stale.getVersion()));
+    }
+
+    @Test
+    @DisplayName("낙관적 lock - 트랜잭션 밖의 충돌 확인이 커넥션을 하나만 사용함 (풀 크기 1에서도 대기하지 않음)")
+    void optimisticLockConflictSingleConnection() {
+        Member stale = memberRepository.findById(MEMBER_A);
+        memberRepository.update(MEMBER_A, 500_000, stale.getVersion());
+
+        try (HikariDataSource singleConnection = new HikariDataSource()) {
+            singleConnection.setJdbcUrl(URL);
+            singleConnection.setUsername(USERNAME);
+            singleConnection.setPassword(PASSWORD);
+            singleConnection.setMaximumPoolSize(1);
+            singleConnection.setConnectionTimeout(250);
+
+            assertThrows(OptimisticLockingFailureException.class,
+                    () -> new MemberRepositoryV4_1(singleConnection).update(MEMBER_A, 0, stale.getVersion()));
+            assertThrows(OptimisticLockingFailureException.class,
+                    () -> new MemberRepositoryV4_2(singleConnection).update(MEMBER_A, 0, stale.getVersion()));
+        }
+    }
+
+    @Test
+    @DisplayName("낙관적 lock 이체 - 충돌 시 backoff 후 재시도")
+    void optimisticRetry() throws InterruptedException {
+        OptimisticRetryTransferService retryService = new OptimisticRetryTransferService(
+                memberService, 50, new Backoff(Duration.ofMillis(1), Duration.ofMillis(20)));
+
+        ConcurrentTransfers.Result result = ConcurrentTransfers.run("OPTIMISTIC_RETRY", 8, 50, (thread, i) -> {
+            if (thread % 2 == 0) {
+                retryService.transfer(MEMBER_A, MEMBER_B, 1);
+            } else {
+                retryService.transfer(MEMBER_B, MEMBER_A, 1);
+            }
+        });
+        log.info("attempts={}, conflicts={}, exhausted={}, conflict rate={}",
+                retryService.getAttemptCount(), retryService.getConflictCount(),
+                retryService.getExhaustedCount(), retryService.getConflictRate());
+
+        int total = memberRepository.findById(MEMBER_A).getMoney() + memberRepository.findById(MEMBER_B).getMoney();
+        assertThat(total).isEqualTo(2_000_000);
+        assertThat(result.failures).isEqualTo(retryService.getExhaustedCount());
+        assertThat(retryService.getAttemptCount())
+                .isEqualTo(retryService.getTransferCount() + retryService.getConflictCount() - retryService.getExhaustedCount());
+    }
+
+    @Test
+    @DisplayName("JVM 내부 striped lock을 먼저 잡고 이체 - lock 없는 read-modify-write도 갱신 손실 없음")
+    void stripedLockTransfer() throws InterruptedException {
+        StripedLockTransferService lockedService = new StripedLockTransferService(memberService, 16);
+
+        ConcurrentTransfers.Result result = ConcurrentTransfers.run("STRIPED_LOCK", 8, 100, (thread, i) -> {
+            if (thread % 2 == 0) {
+                lockedService.transfer(MEMBER_A, MEMBER_B, 1, TransferStrategy.READ_MODIFY_WRITE);
+            } else {
+                lockedService.transfer(MEMBER_B, MEMBER_A, 1, TransferStrategy.READ_MODIFY_WRITE);
+            }
+        });
+        log.info("lock wait {}", lockedService.getLocks().getLockWaitHistogram());
+
+        int total = memberRepository.findById(MEMBER_A).getMoney() + memberRepository.findById(MEMBER_B).getMoney();
+        assertThat(total).isEqualTo(2_000_000);
+        assertThat(result.failures).isZero();
+        assertThat(lockedService.getLocks().getLockWaitHistogram().getCount()).isEqualTo(800);
+    }
+
+    /*
+    방식별 처리량, abort 비교는 부하 테스트로 측정
+    ./gradlew loadTest -Pargs="--profile=contention --service=V4 --strategy=PESSIMISTIC_LOCK --threads=8"
+     */
+    @Test
+    @DisplayName("A<->B 양방향 동시 이체 - lock 없이 조회하는 READ_MODIFY_WRITE 외에는 잔고 합계가 유지됨")
+    void contentionConservesMoney() throws InterruptedException {
+        for (TransferStrategy strategy : TransferStrategy.values()) {
+            // read-modify-write는 lock 없이 조회하기 때문에 갱신 손실이 생길 수 있음
+            if (strategy == TransferStrategy.READ_MODIFY_WRITE) {
+                continue;
+            }
+            memberRepository.update(MEMBER_A, 1_000_000);
+            memberRepository.update(MEMBER_B, 1_000_000);
+
+            ConcurrentTransfers.run(strategy.name(), 8, 100, (thread, i) -> {
+                if (thread % 2 == 0) {
+                    memberService.transfer(MEMBER_A, MEMBER_B, 1, strategy);
+                } else {
+                    memberService.transfer(MEMBER_B, MEMBER_A, 1, strategy);
+                }
+            });
+
+            int total = memberRepository.findById(MEMBER_A).getMoney() + memberRepository.findById(MEMBER_B).getMoney();
+            assertThat(total).as(strategy.name()).isEqualTo(2_000_000);
+        }
+    }
+
+}
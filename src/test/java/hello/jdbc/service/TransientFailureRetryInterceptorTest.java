@@ -0,0 +1,178 @@
+package hello.jdbc.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV5;
+import hello.jdbc.repository.exception.MyDbException;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@Slf4j
+class TransientFailureRetryInterceptorTest {
+
+    public static final String MEMBER_A = "retryA";
+    public static final String MEMBER_B = "retryB";
+    public static final String MEMBER_EX = "ex";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private FlakyMemberRepository memberRepository;
+
+    @Autowired
+    private MemberServiceV4 memberService;
+
+    @TestConfiguration
+    static class TestConfig {
+        @Bean
+        DataSource dataSource() {
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setJdbcUrl(URL);
+            dataSource.setUsername(USERNAME);
+            dataSource.setPassword(PASSWORD);
+            return dataSource;
+        }
+
+        @Bean
+        PlatformTransactionManager transactionManager() {
+            return new DataSourceTransactionManager(dataSource());
+        }
+
+        @Bean
+        FlakyMemberRepository memberRepository() {
+            return new FlakyMemberRepository(dataSource());
+        }
+
+        @Bean
+        MemberServiceV4 memberServiceV4() {
+            return new MemberServiceV4(memberRepository());
+        }
+    }
+
+    /**
+     * 입금(받는 회원 update)을 지정한 횟수만큼 데드락으로 실패시키는 리포지토리
+     * 출금은 이미 반영된 뒤에 실패하므로, 트랜잭션이 롤백되지 않으면 잔고가 맞지 않게 됨
+     */
+    static class FlakyMemberRepository extends MemberRepositoryV5 {
+
+        final AtomicInteger failuresLeft = new AtomicInteger();
+
+        FlakyMemberRepository(DataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        public void update(String memberId, int money) {
+            if (memberId.equals(MEMBER_B) && failuresLeft.getAndUpdate(left -> Math.max(left - 1, 0)) > 0) {
+                // MemberRepositoryV4_1처럼 SQLException을 감싼 예외 (H2의 데드락 SQLState)
+                throw new MyDbException(new SQLException("Deadlock detected", "40001", 40001));
+            }
+            super.update(memberId, money);
+        }
+    }
+
+    @BeforeEach
+    void beforeEach() {
+        memberRepository.failuresLeft.set(0);
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+    }
+
+    @AfterEach
+    void afterEach() {
+        memberRepository.delete(MEMBER_A);
+        memberRepository.delete(MEMBER_B);
+        memberRepository.delete(MEMBER_EX);
+    }
+
+    @Test
+    @DisplayName("데드락으로 실패한 이체는 트랜잭션째로 다시 실행됨")
+    void retryDeadlock() {
+        TransientFailureRetryInterceptor interceptor = interceptor(3, RetryBudget.unlimited());
+        MemberServiceV4 retrying = retrying(interceptor);
+        memberRepository.failuresLeft.set(2);
+
+        retrying.transfer(MEMBER_A, MEMBER_B, 2000);
+
+        // 실패한 두 번의 출금은 롤백되고, 마지막 한 번만 반영됨
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(8000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(12000);
+        assertThat(interceptor.getRetryCount()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("재시도 횟수를 넘기면 마지막 예외를 그대로 던짐")
+    void exhausted() {
+        TransientFailureRetryInterceptor interceptor = interceptor(3, RetryBudget.unlimited());
+        MemberServiceV4 retrying = retrying(interceptor);
+        memberRepository.failuresLeft.set(5);
+
+        assertThrows(MyDbException.class, () -> retrying.transfer(MEMBER_A, MEMBER_B, 2000));
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+        assertThat(interceptor.getRetryCount()).isEqualTo(2);
+        assertThat(interceptor.getExhaustedCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("재시도 예산이 없으면 재시도하지 않음")
+    void budgetRejected() {
+        TransientFailureRetryInterceptor interceptor = interceptor(5, new RetryBudget(0.0, 1));
+        MemberServiceV4 retrying = retrying(interceptor);
+        memberRepository.failuresLeft.set(5);
+
+        assertThrows(MyDbException.class, () -> retrying.transfer(MEMBER_A, MEMBER_B, 2000));
+
+        assertThat(interceptor.getRetryCount()).isEqualTo(1);
+        assertThat(interceptor.getBudgetRejectedCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("비즈니스 예외와 중복 키 예외는 재시도하지 않음")
+    void notTransient() {
+        TransientFailureRetryInterceptor interceptor = interceptor(3, RetryBudget.unlimited());
+        MemberServiceV4 retrying = retrying(interceptor);
+        memberRepository.save(new Member(MEMBER_EX, 10000));
+
+        assertThrows(IllegalStateException.class, () -> retrying.transfer(MEMBER_A, MEMBER_EX, 2000));
+        assertThat(interceptor.getRetryCount()).isZero();
+        assertThat(interceptor.isTransient(new DuplicateKeyException("duplicate"))).isFalse();
+        assertThat(interceptor.isTransient(new MyDbException(new SQLException("Timeout trying to lock table", "HYT00", 50200)))).isTrue();
+    }
+
+    private TransientFailureRetryInterceptor interceptor(int maxAttempts, RetryBudget retryBudget) {
+        return new TransientFailureRetryInterceptor(dataSource, maxAttempts,
+                new Backoff(Duration.ofMillis(1), Duration.ofMillis(10)), retryBudget);
+    }
+
+    // @Transactional 프록시 바깥에 재시도 프록시를 씌움
+    private MemberServiceV4 retrying(TransientFailureRetryInterceptor interceptor) {
+        ProxyFactory proxyFactory = new ProxyFactory(memberService);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(interceptor);
+        return (MemberServiceV4) proxyFactory.getProxy();
+    }
+
+}